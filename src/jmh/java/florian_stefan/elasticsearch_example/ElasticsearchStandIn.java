@@ -0,0 +1,179 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+/**
+ * An in-process stand-in for Elasticsearch, which replays responses recorded from a real cluster after a configurable
+ * latency. It answers just enough of the API for the application to create and load the products index and to serve
+ * the search form, result lists, product pages and suggestions.
+ */
+class ElasticsearchStandIn implements AutoCloseable {
+
+  private static final Pattern INDEX_ACTION = Pattern
+      .compile("\\{\"(index|delete)\":\\{\"_index\":\"([^\"]+)\".*\"_id\":\"([^\"]+)\"");
+
+  private final HttpServer server;
+  private final ExecutorService executorService;
+  private final long minLatencyMillis;
+  private final long maxLatencyMillis;
+  private final byte[] searchResponse;
+  private final byte[] facetsResponse;
+  private final byte[] suggestResponse;
+  private final byte[] getResponse;
+
+  private volatile boolean aliasCreated;
+
+  ElasticsearchStandIn(long minLatencyMillis, long maxLatencyMillis) throws IOException {
+    this.minLatencyMillis = minLatencyMillis;
+    this.maxLatencyMillis = maxLatencyMillis;
+    this.searchResponse = readResponse("search.json");
+    this.facetsResponse = readResponse("facets.json");
+    this.suggestResponse = readResponse("suggest.json");
+    this.getResponse = readResponse("get.json");
+    this.executorService = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "elasticsearch-stand-in");
+      thread.setDaemon(true);
+
+      return thread;
+    });
+    // Without TCP_NODELAY, headers and body written separately wait for delayed ACKs, adding ~40 ms per response.
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+    this.server.setExecutor(executorService);
+    this.server.createContext("/", this::handle);
+    this.server.start();
+  }
+
+  String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executorService.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String method = exchange.getRequestMethod();
+      String path = exchange.getRequestURI().getPath();
+      String body = readBody(exchange.getRequestBody());
+
+      simulateLatency();
+
+      if (method.equals("HEAD")) {
+        respond(exchange, path.startsWith("/_alias/") && aliasCreated ? 200 : 404, null);
+      } else if (path.equals("/_alias/products")) {
+        respond(exchange, 200, "{\"products_v1\":{\"aliases\":{\"products\":{}}}}".getBytes(UTF_8));
+      } else if (path.endsWith("/_search")) {
+        respond(exchange, 200, getSearchResponse(body));
+      } else if (path.contains("/_doc/")) {
+        respond(exchange, 200, getResponse);
+      } else if (path.equals("/_bulk")) {
+        respond(exchange, 200, getBulkResponse(body));
+      } else if (path.endsWith("/_refresh") || path.endsWith("/_forcemerge")) {
+        respond(exchange, 200, "{\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}".getBytes(UTF_8));
+      } else if (path.equals("/_aliases")) {
+        aliasCreated = true;
+        respond(exchange, 200, "{\"acknowledged\":true}".getBytes(UTF_8));
+      } else if (method.equals("PUT") && path.endsWith("/_settings")) {
+        respond(exchange, 200, "{\"acknowledged\":true}".getBytes(UTF_8));
+      } else if (method.equals("PUT")) {
+        String index = path.substring(1);
+        String response = "{\"acknowledged\":true,\"shards_acknowledged\":true,\"index\":\"" + index + "\"}";
+
+        respond(exchange, 200, response.getBytes(UTF_8));
+      } else {
+        respond(exchange, 404, "{}".getBytes(UTF_8));
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private byte[] getSearchResponse(String body) {
+    if (body.contains("\"suggest\"")) {
+      return suggestResponse;
+    }
+    if (body.startsWith("{\"size\":0")) {
+      return facetsResponse;
+    }
+
+    return searchResponse;
+  }
+
+  private static byte[] getBulkResponse(String body) {
+    StringJoiner items = new StringJoiner(",", "{\"took\":1,\"errors\":false,\"items\":[", "]}");
+    Matcher matcher = INDEX_ACTION.matcher(body);
+
+    while (matcher.find()) {
+      String action = matcher.group(1);
+      boolean index = action.equals("index");
+
+      items.add("{\"" + action + "\":{\"_index\":\"" + matcher.group(2) + "\",\"_type\":\"_doc\",\"_id\":\""
+          + matcher.group(3) + "\",\"_version\":1,\"result\":\"" + (index ? "created" : "deleted") + "\","
+          + "\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"_seq_no\":0,\"_primary_term\":1,"
+          + "\"status\":" + (index ? 201 : 200) + "}}");
+    }
+
+    return items.toString().getBytes(UTF_8);
+  }
+
+  private void simulateLatency() {
+    long latencyMillis = ThreadLocalRandom.current().nextLong(minLatencyMillis, maxLatencyMillis + 1);
+
+    try {
+      Thread.sleep(latencyMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+    exchange.sendResponseHeaders(status, body.length);
+
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+
+  private static String readBody(InputStream input) throws IOException {
+    try (var reader = new BufferedReader(new InputStreamReader(input, UTF_8))) {
+      StringJoiner body = new StringJoiner("\n");
+      reader.lines().forEach(body::add);
+
+      return body.toString();
+    }
+  }
+
+  private static byte[] readResponse(String name) throws IOException {
+    try (InputStream input = new ClassPathResource("elasticsearch/" + name).getInputStream()) {
+      return StreamUtils.copyToByteArray(input);
+    }
+  }
+
+}
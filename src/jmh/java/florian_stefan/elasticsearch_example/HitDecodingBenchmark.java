@@ -0,0 +1,71 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class HitDecodingBenchmark {
+
+  private List<BytesReference> sources;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<String> lines = Files.readAllLines(Paths.get(new ClassPathResource("products.json").getURI()));
+
+    sources = IntStream.range(0, lines.size() / 2)
+        .mapToObj(index -> new BytesArray(lines.get(2 * index + 1).getBytes(UTF_8)))
+        .collect(toList());
+  }
+
+  @Benchmark
+  public ProductSearchResult decodeProductSearchResult() {
+    return JsonCodec.readProductSearchResult(nextSource());
+  }
+
+  @Benchmark
+  public void decodeAndRenderProductSearchResult(Blackhole blackhole) {
+    ProductSearchResult productSearchResult = JsonCodec.readProductSearchResult(nextSource());
+
+    blackhole.consume(productSearchResult.getCategories());
+    blackhole.consume(productSearchResult.getTags());
+  }
+
+  @Benchmark
+  public ProductListItem decodeProductListItem() {
+    return JsonCodec.readProductListItem(nextSource());
+  }
+
+  private BytesReference nextSource() {
+    next = (next + 1) % sources.size();
+
+    return sources.get(next);
+  }
+
+}
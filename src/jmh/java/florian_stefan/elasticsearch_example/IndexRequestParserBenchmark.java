@@ -0,0 +1,88 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class IndexRequestParserBenchmark {
+
+  @Param({"0", "1000000"})
+  private int syntheticDocuments;
+
+  @Param({"JSON", "SMILE"})
+  private XContentType bulkContentType;
+
+  private IndexRequestParser indexRequestParser;
+  private Path products;
+
+  @Setup
+  public void setUp() throws IOException {
+    indexRequestParser = new IndexRequestParser();
+    ReflectionTestUtils.setField(indexRequestParser, "bulkMaxActions", 1000);
+    ReflectionTestUtils.setField(indexRequestParser, "bulkMaxSizeInBytes", 5L * 1024 * 1024);
+    ReflectionTestUtils.setField(indexRequestParser, "bulkContentType", bulkContentType);
+
+    Path bundledProducts = Paths.get(new ClassPathResource("products.json").getURI());
+
+    products = syntheticDocuments == 0 ? bundledProducts : writeSyntheticProducts(bundledProducts);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (syntheticDocuments > 0) {
+      Files.delete(products);
+    }
+  }
+
+  @Benchmark
+  public long parseProducts() throws IOException {
+    try (var bulkRequests = indexRequestParser.getBulkRequests("products", Files.lines(products), request -> true)) {
+      return bulkRequests.mapToLong(BulkRequest::numberOfActions).sum();
+    }
+  }
+
+  private Path writeSyntheticProducts(Path bundledProducts) throws IOException {
+    List<String> lines = Files.readAllLines(bundledProducts);
+    Path syntheticProducts = Files.createTempFile("products-", ".json");
+
+    try (BufferedWriter writer = Files.newBufferedWriter(syntheticProducts, UTF_8)) {
+      for (int id = 1; id <= syntheticDocuments; id++) {
+        writer.write("{\"index\":{\"_id\":\"" + id + "\"}}");
+        writer.newLine();
+        writer.write(lines.get((2 * id - 1) % lines.size()));
+        writer.newLine();
+      }
+    }
+
+    return syntheticProducts;
+  }
+
+}
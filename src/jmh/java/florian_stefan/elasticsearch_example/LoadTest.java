@@ -0,0 +1,184 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Drives the search form, result lists and product pages at a fixed arrival rate against an application that talks to
+ * an {@link ElasticsearchStandIn}. Latencies are measured from the time a request was scheduled to be sent rather than
+ * from the time it was actually sent, so that a stalled application cannot hide its queueing delay. The result caches
+ * are disabled by default, so that every request pays for decoding and rendering.
+ */
+public class LoadTest {
+
+  private static final String[] QUERIES = {"steel", "cheese", "wine", "beef", "lid", "soup", "bread", "tea"};
+
+  private final CloseableHttpAsyncClient httpClient;
+  private final List<Target> targets;
+
+  private LoadTest(String baseUrl) {
+    this.httpClient = HttpAsyncClients.custom().setMaxConnTotal(4096).setMaxConnPerRoute(4096).build();
+    this.targets = List.of(
+        new Target("/", i -> baseUrl + "/"),
+        new Target("/products", i -> baseUrl + "/products?query=" + QUERIES[(int) (i % QUERIES.length)] + "&page="
+            + (1 + i % 3)),
+        new Target("/products/{id}", i -> baseUrl + "/products/" + (1 + i % 1000)));
+  }
+
+  public static void main(String[] args) throws Exception {
+    int rate = Integer.getInteger("loadtest.rate", 200);
+    int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+    long minLatencyMillis = Long.getLong("standin.min-latency-millis", 2);
+    long maxLatencyMillis = Long.getLong("standin.max-latency-millis", 10);
+
+    try (var standIn = new ElasticsearchStandIn(minLatencyMillis, maxLatencyMillis);
+        var context = startApplication(standIn, args)) {
+      String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+      LoadTest loadTest = new LoadTest(baseUrl);
+
+      loadTest.httpClient.start();
+      try {
+        loadTest.awaitReady(baseUrl);
+
+        System.out.printf("Warming up for %d s at %d requests/s.%n", warmupSeconds, rate);
+        loadTest.run(rate, warmupSeconds);
+        loadTest.targets.forEach(Target::reset);
+
+        System.out.printf("Measuring for %d s at %d requests/s.%n", durationSeconds, rate);
+        loadTest.run(rate, durationSeconds);
+        loadTest.report(durationSeconds);
+      } finally {
+        loadTest.httpClient.close();
+      }
+    }
+  }
+
+  private static ConfigurableApplicationContext startApplication(ElasticsearchStandIn standIn, String[] args) {
+    return new SpringApplicationBuilder(Application.class)
+        .properties(Map.of(
+            "server.port", "0",
+            "elasticsearch.hosts", standIn.getUrl(),
+            "search.cache.maximum-weight-in-bytes", "0",
+            "products.cache.maximum-weight-in-bytes", "0",
+            "logging.level.root", "WARN"))
+        .run(args);
+  }
+
+  private void awaitReady(String baseUrl) throws Exception {
+    long start = System.nanoTime();
+
+    while (httpClient.execute(new HttpGet(baseUrl + "/status"), null).get().getStatusLine().getStatusCode() != 200) {
+      Thread.sleep(100);
+    }
+
+    System.out.printf("Products index loaded after %d ms.%n", NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  private void run(int rate, int seconds) throws Exception {
+    long intervalNanos = SECONDS.toNanos(1) / rate;
+    long requests = (long) rate * seconds;
+    long start = System.nanoTime();
+    Phaser pendingRequests = new Phaser(1);
+
+    for (long i = 0; i < requests; i++) {
+      long intendedStart = start + i * intervalNanos;
+      Target target = targets.get((int) (i % targets.size()));
+
+      LockSupport.parkNanos(intendedStart - System.nanoTime());
+      pendingRequests.register();
+      httpClient.execute(new HttpGet(target.uri.apply(i / targets.size())), new FutureCallback<>() {
+
+        @Override
+        public void completed(HttpResponse response) {
+          EntityUtils.consumeQuietly(response.getEntity());
+          target.record(intendedStart, response.getStatusLine().getStatusCode() == 200);
+          pendingRequests.arriveAndDeregister();
+        }
+
+        @Override
+        public void failed(Exception e) {
+          target.record(intendedStart, false);
+          pendingRequests.arriveAndDeregister();
+        }
+
+        @Override
+        public void cancelled() {
+          failed(null);
+        }
+
+      });
+    }
+
+    pendingRequests.awaitAdvanceInterruptibly(pendingRequests.arrive(), 60, SECONDS);
+  }
+
+  private void report(int seconds) {
+    System.out.printf("%-16s %8s %8s %10s %10s %10s %10s %10s %10s%n",
+        "target", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+    for (Target target : targets) {
+      Histogram latencies = target.latencies;
+
+      System.out.printf("%-16s %8d %8d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+          target.name,
+          latencies.getTotalCount(),
+          target.errors.sum(),
+          (double) latencies.getTotalCount() / seconds,
+          toMillis(latencies.getValueAtPercentile(50)),
+          toMillis(latencies.getValueAtPercentile(90)),
+          toMillis(latencies.getValueAtPercentile(99)),
+          toMillis(latencies.getValueAtPercentile(99.9)),
+          toMillis(latencies.getMaxValue()));
+    }
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private static class Target {
+
+    private final String name;
+    private final LongFunction<String> uri;
+    private final Histogram latencies = new ConcurrentHistogram(SECONDS.toNanos(60), 3);
+    private final LongAdder errors = new LongAdder();
+
+    Target(String name, LongFunction<String> uri) {
+      this.name = name;
+      this.uri = uri;
+    }
+
+    void record(long intendedStart, boolean successful) {
+      latencies.recordValue(Math.min(System.nanoTime() - intendedStart, latencies.getHighestTrackableValue()));
+
+      if (!successful) {
+        errors.increment();
+      }
+    }
+
+    void reset() {
+      latencies.reset();
+      errors.reset();
+    }
+
+  }
+
+}
@@ -0,0 +1,71 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.Arrays.asList;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SearchSourceBenchmark {
+
+  private static final String QUERY = "stainless steel cleaner vision table cloth energy drink";
+
+  @Param({"1", "4", "8"})
+  private int tokens;
+
+  @Param({"EXACT", "FUZZY"})
+  private QueryTier queryTier;
+
+  private ProductSearchRequest searchRequest;
+
+  @Setup
+  public void setUp() {
+    searchRequest = new ProductSearchRequest();
+    searchRequest.setQuery(String.join(" ", asList(QUERY.split(" ")).subList(0, tokens)));
+    searchRequest.setStatus("{\"name\":\"active\"}");
+    searchRequest.setPriceRange("{\"from\":25.0,\"to\":50.0}");
+    searchRequest.setCategory("{\"name\":\"Sport\"}");
+    searchRequest.setCursor(SearchCursor.of(2, false, asList(1.5, "101"), queryTier).encode());
+  }
+
+  @Benchmark
+  public BoolQueryBuilder buildQuery() {
+    return ProductSearchController.getQuery(searchRequest, queryTier);
+  }
+
+  @Benchmark
+  public SearchSourceBuilder buildSearchSource() {
+    return ProductSearchController.getSearchSource(searchRequest, queryTier);
+  }
+
+  @Benchmark
+  public BytesReference buildAndRenderSearchSource() throws IOException {
+    SearchSourceBuilder searchSource = ProductSearchController.getSearchSource(searchRequest, queryTier);
+
+    return XContentHelper.toXContent(searchSource, XContentType.JSON, false);
+  }
+
+}
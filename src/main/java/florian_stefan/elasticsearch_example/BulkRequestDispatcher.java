@@ -0,0 +1,217 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.elasticsearch.rest.RestStatus.TOO_MANY_REQUESTS;
+
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BulkRequestDispatcher {
+
+  private final RestHighLevelClient restHighLevelClient;
+  private final ElasticsearchMetrics elasticsearchMetrics;
+
+  @Value("${indexing.bulk.concurrent-requests:4}")
+  private int concurrentRequests;
+
+  @Value("${indexing.bulk.max-retries:5}")
+  private int maxRetries;
+
+  @Value("${indexing.bulk.initial-backoff-millis:100}")
+  private long initialBackoffMillis;
+
+  public BulkStatistics dispatch(Stream<BulkRequest> bulkRequests) {
+    return dispatch(bulkRequests, indexedDocuments -> {});
+  }
+
+  public BulkStatistics dispatch(Stream<BulkRequest> bulkRequests, LongConsumer progressListener) {
+    Dispatch dispatch = new Dispatch(progressListener);
+
+    try {
+      bulkRequests.forEach(dispatch::submit);
+    } finally {
+      dispatch.awaitCompletion();
+      dispatch.close();
+    }
+
+    return dispatch.getStatistics();
+  }
+
+  private class Dispatch {
+
+    private final Semaphore inFlightRequests = new Semaphore(concurrentRequests);
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final BackoffPolicy backoffPolicy = BackoffPolicy.exponentialBackoff(
+        TimeValue.timeValueMillis(initialBackoffMillis), maxRetries);
+    private final LongAdder indexedDocuments = new LongAdder();
+    private final LongAdder failedDocuments = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private final LongConsumer progressListener;
+
+    Dispatch(LongConsumer progressListener) {
+      this.progressListener = progressListener;
+    }
+
+    void submit(BulkRequest bulkRequest) {
+      acquire(1);
+      executeOrFail(bulkRequest, backoffPolicy.iterator());
+    }
+
+    /**
+     * Waits for the requests in flight, also after the stream of bulk requests failed, so that none of them reaches an
+     * index that is deleted afterwards. Every request holds a permit until it completes, which the client guarantees
+     * within its timeouts, so the wait does not give in to interrupts.
+     */
+    void awaitCompletion() {
+      inFlightRequests.acquireUninterruptibly(concurrentRequests);
+      inFlightRequests.release(concurrentRequests);
+    }
+
+    void close() {
+      retryScheduler.shutdown();
+    }
+
+    BulkStatistics getStatistics() {
+      Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+      return new BulkStatistics(indexedDocuments.sum(), failedDocuments.sum(), elapsed);
+    }
+
+    private void acquire(int permits) {
+      try {
+        inFlightRequests.acquire(permits);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new BulkRequestDispatcherException(e);
+      }
+    }
+
+    /**
+     * Executes the request and treats an exception thrown before it was sent like a failed request, which releases
+     * its permit.
+     */
+    private void executeOrFail(BulkRequest bulkRequest, Iterator<TimeValue> backoff) {
+      try {
+        execute(bulkRequest, backoff);
+      } catch (RuntimeException e) {
+        fail(bulkRequest, e);
+      }
+    }
+
+    private void execute(BulkRequest bulkRequest, Iterator<TimeValue> backoff) {
+      Timer.Sample sample = elasticsearchMetrics.startRoundTrip();
+      AtomicBoolean completed = new AtomicBoolean();
+
+      // The client hands exceptions thrown while handling a response to the failure handler, which must not count the
+      // documents of the attempt a second time.
+      restHighLevelClient.bulkAsync(bulkRequest, ActionListener.wrap(
+          bulkResponse -> {
+            if (completed.compareAndSet(false, true)) {
+              elasticsearchMetrics.recordRoundTrip(sample, "bulk", null);
+              onResponse(bulkRequest, bulkResponse, backoff);
+            }
+          },
+          e -> {
+            if (completed.compareAndSet(false, true)) {
+              elasticsearchMetrics.recordRoundTrip(sample, "bulk", e);
+              onFailure(bulkRequest, e, backoff);
+            } else {
+              log.error("Failed to handle the response of a bulk request.", e);
+            }
+          }));
+    }
+
+    private void onResponse(BulkRequest bulkRequest, BulkResponse bulkResponse, Iterator<TimeValue> backoff) {
+      BulkRequest retryRequest = new BulkRequest();
+      boolean canRetry = backoff.hasNext();
+      long indexedItems = 0;
+      long failedItems = 0;
+
+      for (BulkItemResponse itemResponse : bulkResponse) {
+        if (!itemResponse.isFailed()) {
+          indexedItems++;
+        } else if (canRetry && itemResponse.status() == TOO_MANY_REQUESTS) {
+          retryRequest.add(bulkRequest.requests().get(itemResponse.getItemId()));
+        } else {
+          failedItems++;
+          log.warn("Failed to index document {}: {}", itemResponse.getId(), itemResponse.getFailureMessage());
+        }
+      }
+
+      indexedDocuments.add(indexedItems);
+      failedDocuments.add(failedItems);
+
+      try {
+        progressListener.accept(indexedItems);
+        elasticsearchMetrics.recordBulk(bulkResponse, indexedItems, retryRequest.numberOfActions(), failedItems);
+      } finally {
+        if (retryRequest.numberOfActions() > 0) {
+          scheduleRetry(retryRequest, backoff);
+        } else {
+          inFlightRequests.release();
+        }
+      }
+    }
+
+    private void onFailure(BulkRequest bulkRequest, Exception e, Iterator<TimeValue> backoff) {
+      if (backoff.hasNext() && ExceptionsHelper.status(e) == TOO_MANY_REQUESTS) {
+        scheduleRetry(bulkRequest, backoff);
+      } else {
+        fail(bulkRequest, e);
+      }
+    }
+
+    private void fail(BulkRequest bulkRequest, Exception e) {
+      failedDocuments.add(bulkRequest.numberOfActions());
+      elasticsearchMetrics.recordBulkFailure(bulkRequest.numberOfActions());
+      log.warn("Failed to execute bulk request with {} documents.", bulkRequest.numberOfActions(), e);
+      inFlightRequests.release();
+    }
+
+    private void scheduleRetry(BulkRequest bulkRequest, Iterator<TimeValue> backoff) {
+      TimeValue delay = backoff.next();
+
+      log.debug("Retrying {} rejected documents in {}.", bulkRequest.numberOfActions(), delay);
+
+      try {
+        retryScheduler.schedule(() -> executeOrFail(bulkRequest, backoff), delay.millis(), TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        fail(bulkRequest, e);
+      }
+    }
+
+  }
+
+  private static class BulkRequestDispatcherException extends RuntimeException {
+
+    BulkRequestDispatcherException(Throwable cause) {
+      super(cause);
+    }
+
+  }
+
+}
@@ -0,0 +1,19 @@
+package florian_stefan.elasticsearch_example;
+
+import java.time.Duration;
+import lombok.Value;
+
+@Value
+public class BulkStatistics {
+
+  private long indexedDocuments;
+  private long failedDocuments;
+  private Duration elapsed;
+
+  public double getDocumentsPerSecond() {
+    long elapsedMillis = Math.max(elapsed.toMillis(), 1);
+
+    return indexedDocuments * 1000.0 / elapsedMillis;
+  }
+
+}
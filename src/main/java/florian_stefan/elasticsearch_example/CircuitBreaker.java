@@ -0,0 +1,131 @@
+package florian_stefan.elasticsearch_example;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops sending reads to Elasticsearch while most of the recent ones failed. The breaker opens once the failure rate of
+ * the last requests reaches the threshold. After the open period a single probe request is let through, whose outcome
+ * either closes the breaker again or keeps it open for another period.
+ */
+@Component
+public class CircuitBreaker {
+
+  private final boolean[] failures;
+  private final double failureRateThreshold;
+  private final long openNanos;
+  private final LongSupplier nanoTime;
+
+  private int calls;
+  private int failedCalls;
+  private int nextCall;
+  private State state = State.CLOSED;
+  private long openedAtNanos;
+
+  @Autowired
+  public CircuitBreaker(MeterRegistry meterRegistry,
+      @Value("${search.circuit-breaker.window-size:50}") int windowSize,
+      @Value("${search.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+      @Value("${search.circuit-breaker.open-millis:5000}") long openMillis) {
+    this(meterRegistry, windowSize, failureRateThreshold, openMillis, System::nanoTime);
+  }
+
+  /**
+   * Creates a breaker that measures its open periods with the given clock.
+   */
+  CircuitBreaker(MeterRegistry meterRegistry, int windowSize, double failureRateThreshold, long openMillis,
+      LongSupplier nanoTime) {
+    this.failures = new boolean[windowSize];
+    this.failureRateThreshold = failureRateThreshold;
+    this.openNanos = openMillis * 1_000_000;
+    this.nanoTime = nanoTime;
+
+    meterRegistry.gauge("elasticsearch.circuit.breaker.open", this, breaker -> breaker.isOpen() ? 1 : 0);
+  }
+
+  public synchronized boolean isOpen() {
+    return state != State.CLOSED;
+  }
+
+  /**
+   * Returns whether a request may be sent. Every permitted request has to be followed by exactly one call to
+   * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+   */
+  public synchronized boolean tryAcquirePermission() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    if (state == State.OPEN && nanoTime.getAsLong() - openedAtNanos >= openNanos) {
+      state = State.PROBING;
+      return true;
+    }
+
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    if (state == State.PROBING) {
+      close();
+    } else if (state == State.CLOSED) {
+      record(false);
+    }
+  }
+
+  public synchronized void onFailure() {
+    if (state == State.PROBING) {
+      open();
+    } else if (state == State.CLOSED) {
+      record(true);
+
+      if (calls == failures.length && failedCalls >= failureRateThreshold * calls) {
+        open();
+      }
+    }
+  }
+
+  /**
+   * Records a request whose outcome says nothing about the health of the cluster, such as a rejected one. An ignored
+   * probe keeps the breaker open for another period, as the next probe would otherwise be let through at once.
+   */
+  public synchronized void onIgnored() {
+    if (state == State.PROBING) {
+      open();
+    }
+  }
+
+  private void record(boolean failure) {
+    if (calls == failures.length) {
+      failedCalls -= failures[nextCall] ? 1 : 0;
+    } else {
+      calls++;
+    }
+
+    failures[nextCall] = failure;
+    failedCalls += failure ? 1 : 0;
+    nextCall = (nextCall + 1) % failures.length;
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAtNanos = nanoTime.getAsLong();
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    calls = 0;
+    failedCalls = 0;
+    nextCall = 0;
+  }
+
+  private enum State {
+
+    CLOSED,
+    OPEN,
+    PROBING
+
+  }
+
+}
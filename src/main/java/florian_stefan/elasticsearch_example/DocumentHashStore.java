@@ -0,0 +1,195 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.carrotsearch.hppc.ObjectLongHashMap;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.carrotsearch.hppc.cursors.ObjectLongCursor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.hash.MurmurHash3.Hash128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps a 64 bit hash of the source of every indexed product, which allows delta files to skip documents that have not
+ * changed since they were indexed. The hashes are held in a primitive map and persisted to a local file, which is
+ * only read once delta ingestion first uses the store and is kept in the delta directory by default.
+ */
+@Component
+public class DocumentHashStore {
+
+  private final Path path;
+  private final ObjectLongHashMap<String> hashesById = new ObjectLongHashMap<>();
+
+  private boolean loaded;
+
+  public DocumentHashStore(
+      @Value("${indexing.delta.hash-store:${indexing.delta.directory:.}/product-hashes.bin}") String path) {
+    this.path = Paths.get(path);
+  }
+
+  /**
+   * Returns the changes of a delta, which only accept documents whose hash differs from the stored one.
+   */
+  public synchronized Changes newDelta() {
+    loadIfNecessary();
+
+    return new Changes(false);
+  }
+
+  /**
+   * Returns the changes of a full reindex, which accept every document and replace all stored hashes once applied.
+   */
+  public synchronized Changes newSnapshot() {
+    loadIfNecessary();
+
+    return new Changes(true);
+  }
+
+  public synchronized void apply(Changes changes) {
+    loadIfNecessary();
+
+    if (changes.replaceAll) {
+      hashesById.clear();
+    }
+
+    hashesById.putAll(changes.updatedHashesById);
+    changes.deletedIds.forEach(hashesById::remove);
+
+    save();
+  }
+
+  private void loadIfNecessary() {
+    if (loaded || !Files.exists(path)) {
+      loaded = true;
+      return;
+    }
+
+    try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      int size = input.readInt();
+
+      for (int i = 0; i < size; i++) {
+        hashesById.put(input.readUTF(), input.readLong());
+      }
+
+      loaded = true;
+    } catch (IOException e) {
+      hashesById.clear();
+      throw new DocumentHashStoreException(e);
+    }
+  }
+
+  private void save() {
+    Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+    try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+      output.writeInt(hashesById.size());
+
+      for (ObjectLongCursor<String> cursor : hashesById) {
+        output.writeUTF(cursor.key);
+        output.writeLong(cursor.value);
+      }
+    } catch (IOException e) {
+      throw new DocumentHashStoreException(e);
+    }
+
+    try {
+      Files.move(temporaryPath, path, ATOMIC_MOVE, REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new DocumentHashStoreException(e);
+    }
+  }
+
+  private static long hash(IndexRequest indexRequest) {
+    BytesRef source = indexRequest.source().toBytesRef();
+
+    return MurmurHash3.hash128(source.bytes, source.offset, source.length, 0, new Hash128()).h1;
+  }
+
+  /**
+   * Collects the hashes of the documents of one delta or reindex. They are only applied to the store after all
+   * documents have been indexed successfully, so that failed documents are not skipped the next time.
+   */
+  public class Changes implements Predicate<DocWriteRequest<?>> {
+
+    private final boolean replaceAll;
+    private final ObjectLongHashMap<String> updatedHashesById = new ObjectLongHashMap<>();
+    private final Set<String> deletedIds = new HashSet<>();
+
+    private long skippedDocuments;
+
+    private Changes(boolean replaceAll) {
+      this.replaceAll = replaceAll;
+    }
+
+    @Override
+    public boolean test(DocWriteRequest<?> request) {
+      String id = request.id();
+
+      if (!(request instanceof IndexRequest)) {
+        updatedHashesById.remove(id);
+        deletedIds.add(id);
+
+        return true;
+      }
+
+      long hash = hash((IndexRequest) request);
+
+      if (!replaceAll && isStored(id, hash)) {
+        skippedDocuments++;
+
+        return false;
+      }
+
+      deletedIds.remove(id);
+      updatedHashesById.put(id, hash);
+
+      return true;
+    }
+
+    public Set<String> getChangedIds() {
+      Set<String> changedIds = new HashSet<>(deletedIds);
+
+      for (ObjectCursor<String> cursor : updatedHashesById.keys()) {
+        changedIds.add(cursor.value);
+      }
+
+      return changedIds;
+    }
+
+    public long getSkippedDocuments() {
+      return skippedDocuments;
+    }
+
+    private boolean isStored(String id, long hash) {
+      synchronized (DocumentHashStore.this) {
+        return hashesById.containsKey(id) && hashesById.get(id) == hash;
+      }
+    }
+
+  }
+
+  private static class DocumentHashStoreException extends RuntimeException {
+
+    DocumentHashStoreException(Throwable cause) {
+      super(cause);
+    }
+
+  }
+
+}
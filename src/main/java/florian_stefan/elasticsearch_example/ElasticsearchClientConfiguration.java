@@ -0,0 +1,113 @@
+package florian_stefan.elasticsearch_example;
+
+import java.util.Arrays;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the client for all configured nodes. The low level client sends the requests to the nodes in a round-robin
+ * fashion and excludes nodes that failed for an exponentially growing period of time. If sniffing is enabled, the nodes
+ * of the cluster are fetched periodically and after every failure. If compression is enabled, larger request bodies
+ * are gzipped and responses are accepted gzipped as well.
+ */
+@Configuration
+public class ElasticsearchClientConfiguration {
+
+  @Value("${elasticsearch.hosts:http://localhost:9200}")
+  private String[] hosts;
+
+  @Value("${elasticsearch.max-connections-total:128}")
+  private int maxConnectionsTotal;
+
+  @Value("${elasticsearch.max-connections-per-route:64}")
+  private int maxConnectionsPerRoute;
+
+  @Value("${elasticsearch.io-thread-count:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+  private int ioThreadCount;
+
+  @Value("${elasticsearch.keep-alive-millis:60000}")
+  private long keepAliveMillis;
+
+  @Value("${elasticsearch.connect-timeout-millis:1000}")
+  private int connectTimeoutMillis;
+
+  @Value("${elasticsearch.socket-timeout-millis:30000}")
+  private int socketTimeoutMillis;
+
+  @Value("${elasticsearch.max-retry-timeout-millis:60000}")
+  private int maxRetryTimeoutMillis;
+
+  @Value("${elasticsearch.compression.enabled:false}")
+  private boolean compressionEnabled;
+
+  @Value("${elasticsearch.compression.min-size-in-bytes:1024}")
+  private long compressionMinSizeInBytes;
+
+  @Value("${elasticsearch.sniffer.enabled:false}")
+  private boolean snifferEnabled;
+
+  @Value("${elasticsearch.sniffer.interval-millis:300000}")
+  private int sniffIntervalMillis;
+
+  @Value("${elasticsearch.sniffer.after-failure-delay-millis:60000}")
+  private int sniffAfterFailureDelayMillis;
+
+  private final SniffOnFailureListener sniffOnFailureListener = new SniffOnFailureListener();
+
+  @Bean(destroyMethod = "close")
+  public RestHighLevelClient restHighLevelClient() {
+    RestClientBuilder restClientBuilder = RestClient.builder(getHttpHosts())
+        .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+            .setConnectTimeout(connectTimeoutMillis)
+            .setSocketTimeout(socketTimeoutMillis))
+        .setMaxRetryTimeoutMillis(maxRetryTimeoutMillis)
+        .setHttpClientConfigCallback(this::configureHttpClient);
+
+    if (snifferEnabled) {
+      restClientBuilder.setFailureListener(sniffOnFailureListener);
+    }
+
+    return new RestHighLevelClient(restClientBuilder);
+  }
+
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "elasticsearch.sniffer.enabled", havingValue = "true")
+  public Sniffer sniffer(RestHighLevelClient restHighLevelClient) {
+    Sniffer sniffer = Sniffer.builder(restHighLevelClient.getLowLevelClient())
+        .setSniffIntervalMillis(sniffIntervalMillis)
+        .setSniffAfterFailureDelayMillis(sniffAfterFailureDelayMillis)
+        .build();
+    sniffOnFailureListener.setSniffer(sniffer);
+
+    return sniffer;
+  }
+
+  private HttpAsyncClientBuilder configureHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
+    httpClientBuilder
+        .setMaxConnTotal(maxConnectionsTotal)
+        .setMaxConnPerRoute(maxConnectionsPerRoute)
+        .setKeepAliveStrategy((response, context) -> keepAliveMillis)
+        .setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreadCount).build());
+
+    if (compressionEnabled) {
+      return GzipHttpAsyncClient.wrap(httpClientBuilder, compressionMinSizeInBytes);
+    }
+
+    return httpClientBuilder;
+  }
+
+  private HttpHost[] getHttpHosts() {
+    return Arrays.stream(hosts).map(String::trim).map(HttpHost::create).toArray(HttpHost[]::new);
+  }
+
+}
@@ -0,0 +1,108 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ElasticsearchMetrics {
+
+  private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+  private final MeterRegistry meterRegistry;
+
+  public Timer.Sample startRoundTrip() {
+    return Timer.start(meterRegistry);
+  }
+
+  public void recordRoundTrip(Timer.Sample sample, String operation, Throwable failure) {
+    sample.stop(Timer.builder("elasticsearch.client.round.trip")
+        .description("Time from sending a request to Elasticsearch until its response has been parsed")
+        .tag("operation", operation)
+        .tag("outcome", failure == null ? "success" : "failure")
+        .publishPercentiles(PERCENTILES)
+        .register(meterRegistry));
+  }
+
+  public <T> T recordRoundTrip(String operation, Supplier<T> request) {
+    Timer.Sample sample = startRoundTrip();
+
+    try {
+      T response = request.get();
+      recordRoundTrip(sample, operation, null);
+
+      return response;
+    } catch (RuntimeException e) {
+      recordRoundTrip(sample, operation, e);
+      throw e;
+    }
+  }
+
+  public SearchResponse recordSearch(String operation, SearchResponse searchResponse) {
+    recordTook(operation, searchResponse.getTook().millis());
+
+    DistributionSummary.builder("elasticsearch.search.hits")
+        .description("Number of hits returned per search")
+        .tag("operation", operation)
+        .register(meterRegistry)
+        .record(searchResponse.getHits().getHits().length);
+
+    if (searchResponse.isTimedOut() || searchResponse.getFailedShards() > 0) {
+      meterRegistry.counter("elasticsearch.search.partial", "operation", operation).increment();
+    }
+
+    return searchResponse;
+  }
+
+  public void recordQueryTier(QueryTier queryTier) {
+    meterRegistry.counter("search.query.tier", "tier", queryTier.name().toLowerCase(Locale.ROOT)).increment();
+  }
+
+  public void recordHedged(String operation) {
+    meterRegistry.counter("elasticsearch.requests.hedged", "operation", operation).increment();
+  }
+
+  public void recordTimeout(String operation) {
+    meterRegistry.counter("elasticsearch.requests.timed.out", "operation", operation).increment();
+  }
+
+  public void recordShortCircuited(String operation) {
+    meterRegistry.counter("elasticsearch.requests.short.circuited", "operation", operation).increment();
+  }
+
+  public void recordCoalesced(String operation) {
+    meterRegistry.counter("elasticsearch.requests.coalesced", "operation", operation).increment();
+  }
+
+  public void recordBulk(BulkResponse bulkResponse, long indexedItems, long retriedItems, long failedItems) {
+    recordTook("bulk", bulkResponse.getTook().millis());
+
+    meterRegistry.counter("elasticsearch.bulk.items", "result", "indexed").increment(indexedItems);
+    meterRegistry.counter("elasticsearch.bulk.items", "result", "retried").increment(retriedItems);
+    meterRegistry.counter("elasticsearch.bulk.items", "result", "failed").increment(failedItems);
+  }
+
+  public void recordBulkFailure(int failedItems) {
+    meterRegistry.counter("elasticsearch.bulk.items", "result", "failed").increment(failedItems);
+  }
+
+  private void recordTook(String operation, long tookInMillis) {
+    Timer.builder("elasticsearch.server.took")
+        .description("Time Elasticsearch reports for executing a request")
+        .tag("operation", operation)
+        .publishPercentiles(PERCENTILES)
+        .register(meterRegistry)
+        .record(tookInMillis, MILLISECONDS);
+  }
+
+}
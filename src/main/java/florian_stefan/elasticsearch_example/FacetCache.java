@@ -0,0 +1,63 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.index.query.MatchAllQueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class FacetCache {
+
+  private final SearchRequestExecutor searchRequestExecutor;
+  private final IndexRequestParser indexRequestParser;
+  private final AsyncLoadingCache<String, Facets> facetsByIndex;
+
+  public FacetCache(SearchRequestExecutor searchRequestExecutor, IndexRequestParser indexRequestParser,
+      MeterRegistry meterRegistry,
+      @Value("${facets.cache.maximum-size:16}") long maximumSize,
+      @Value("${facets.cache.refresh-after-write-seconds:30}") long refreshAfterWriteSeconds,
+      @Value("${facets.cache.expire-after-write-seconds:300}") long expireAfterWriteSeconds) {
+    this.searchRequestExecutor = searchRequestExecutor;
+    this.indexRequestParser = indexRequestParser;
+    this.facetsByIndex = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .refreshAfterWrite(refreshAfterWriteSeconds, SECONDS)
+        .expireAfterWrite(expireAfterWriteSeconds, SECONDS)
+        .recordStats()
+        .buildAsync(this::loadFacets);
+
+    CaffeineCacheMetrics.monitor(meterRegistry, facetsByIndex.synchronous(), "facets");
+  }
+
+  public CompletableFuture<Facets> getFacets() {
+    return facetsByIndex.get(indexRequestParser.getAlias());
+  }
+
+  @EventListener
+  public void onIndexChanged(IndexChangedEvent event) {
+    facetsByIndex.synchronous().refresh(event.getIndex());
+  }
+
+  static SearchRequest getSearchRequest(String index) {
+    SearchSourceBuilder sourceBuilder = Facets.appendAggregations(new SearchSourceBuilder()
+        .query(new MatchAllQueryBuilder())
+        .size(0));
+
+    return new SearchRequest(index).source(sourceBuilder).requestCache(true);
+  }
+
+  private CompletableFuture<Facets> loadFacets(String index, Executor executor) {
+    return searchRequestExecutor.search("facets", getSearchRequest(index)).thenApply(Facets::extract);
+  }
+
+}
@@ -0,0 +1,124 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toList;
+import static org.elasticsearch.search.aggregations.support.ValueType.STRING;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.Category;
+import florian_stefan.elasticsearch_example.ProductSearchController.PriceRange;
+import florian_stefan.elasticsearch_example.ProductSearchController.Status;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+@Value
+public class Facets {
+
+  static final String STATUSES = "statuses";
+  static final String PRICE_RANGES = "price_ranges";
+  static final String CATEGORIES = "categories";
+
+  private static final int PRICE_RANGE_LENGTH = 25;
+
+  private List<Status> statuses;
+  private List<PriceRange> priceRanges;
+  private List<Category> categories;
+
+  static SearchSourceBuilder appendAggregations(SearchSourceBuilder sourceBuilder) {
+    return appendAggregations(sourceBuilder, emptyMap());
+  }
+
+  static SearchSourceBuilder appendAggregations(SearchSourceBuilder sourceBuilder, Map<String, QueryBuilder> filters) {
+    return sourceBuilder
+        .aggregation(filterByOtherFacets(STATUSES, getStatusAggregation(), filters))
+        .aggregation(filterByOtherFacets(PRICE_RANGES, getPriceAggregation(), filters))
+        .aggregation(filterByOtherFacets(CATEGORIES, getCategoriesAggregation(), filters));
+  }
+
+  static BoolQueryBuilder combine(Collection<QueryBuilder> filters) {
+    BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
+
+    filters.forEach(queryBuilder::filter);
+
+    return queryBuilder;
+  }
+
+  static Facets extract(SearchResponse searchResponse) {
+    return new Facets(extractStatuses(searchResponse),
+        extractPriceRanges(searchResponse),
+        extractCategories(searchResponse));
+  }
+
+  private static FilterAggregationBuilder filterByOtherFacets(String facet, AggregationBuilder aggregationBuilder,
+      Map<String, QueryBuilder> filters) {
+    BoolQueryBuilder otherFilters = new BoolQueryBuilder();
+
+    filters.forEach((otherFacet, filter) -> {
+      if (!otherFacet.equals(facet)) {
+        otherFilters.filter(filter);
+      }
+    });
+
+    return new FilterAggregationBuilder(facet, otherFilters).subAggregation(aggregationBuilder);
+  }
+
+  private static TermsAggregationBuilder getStatusAggregation() {
+    return new TermsAggregationBuilder(STATUSES, STRING).field("status").minDocCount(0);
+  }
+
+  private static RangeAggregationBuilder getPriceAggregation() {
+    RangeAggregationBuilder aggregationBuilder = new RangeAggregationBuilder(PRICE_RANGES).field("price");
+
+    for (int from = 0, to = PRICE_RANGE_LENGTH; from < 100; from += PRICE_RANGE_LENGTH, to += PRICE_RANGE_LENGTH) {
+      aggregationBuilder.addRange(from, to);
+    }
+
+    return aggregationBuilder;
+  }
+
+  /**
+   * Aggregates the category names copied to the products themselves, which counts products without joining the nested
+   * categories.
+   */
+  private static TermsAggregationBuilder getCategoriesAggregation() {
+    return new TermsAggregationBuilder(CATEGORIES, STRING).field("category_names").minDocCount(0);
+  }
+
+  private static List<Status> extractStatuses(SearchResponse searchResponse) {
+    Terms statuses = getFacetAggregation(searchResponse, STATUSES);
+
+    return statuses.getBuckets().stream().map(Status::of).collect(toList());
+  }
+
+  private static List<PriceRange> extractPriceRanges(SearchResponse searchResponse) {
+    Range priceRanges = getFacetAggregation(searchResponse, PRICE_RANGES);
+
+    return priceRanges.getBuckets().stream().map(PriceRange::of).collect(toList());
+  }
+
+  private static List<Category> extractCategories(SearchResponse searchResponse) {
+    Terms categories = getFacetAggregation(searchResponse, CATEGORIES);
+
+    return categories.getBuckets().stream().map(Category::of).collect(toList());
+  }
+
+  private static <T extends Aggregation> T getFacetAggregation(SearchResponse searchResponse, String facet) {
+    Filter filter = searchResponse.getAggregations().get(facet);
+
+    return filter.getAggregations().get(facet);
+  }
+
+}
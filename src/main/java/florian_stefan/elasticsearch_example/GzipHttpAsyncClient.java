@@ -0,0 +1,208 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.apache.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.apache.http.HttpHeaders.CONTENT_ENCODING;
+import static org.apache.http.HttpHeaders.CONTENT_LENGTH;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Gzips request bodies and decompresses gzipped responses. This cannot be done with interceptors, because the low level
+ * Elasticsearch client creates the producer of the request content before the request interceptors run and the
+ * response interceptors run before the consumer buffers the response content.
+ */
+class GzipHttpAsyncClient extends CloseableHttpAsyncClient {
+
+  private final CloseableHttpAsyncClient httpAsyncClient;
+  private final long minSizeInBytes;
+
+  private GzipHttpAsyncClient(CloseableHttpAsyncClient httpAsyncClient, long minSizeInBytes) {
+    this.httpAsyncClient = httpAsyncClient;
+    this.minSizeInBytes = minSizeInBytes;
+  }
+
+  /**
+   * Returns a builder that builds the client of the given builder and wraps it, compressing request bodies of at least
+   * the given size.
+   */
+  static HttpAsyncClientBuilder wrap(HttpAsyncClientBuilder httpClientBuilder, long minSizeInBytes) {
+    return new HttpAsyncClientBuilder() {
+
+      @Override
+      public CloseableHttpAsyncClient build() {
+        return new GzipHttpAsyncClient(httpClientBuilder.build(), minSizeInBytes);
+      }
+
+    };
+  }
+
+  @Override
+  public void start() {
+    httpAsyncClient.start();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return httpAsyncClient.isRunning();
+  }
+
+  @Override
+  public void close() throws IOException {
+    httpAsyncClient.close();
+  }
+
+  @Override
+  public <T> Future<T> execute(
+      HttpAsyncRequestProducer requestProducer,
+      HttpAsyncResponseConsumer<T> responseConsumer,
+      HttpContext context,
+      FutureCallback<T> callback) {
+    HttpAsyncRequestProducer compressingRequestProducer;
+
+    try {
+      compressingRequestProducer = compress(requestProducer);
+    } catch (IOException | HttpException e) {
+      BasicFuture<T> future = new BasicFuture<>(callback);
+      future.failed(e);
+
+      return future;
+    }
+
+    return httpAsyncClient.execute(compressingRequestProducer, new DecompressingResponseConsumer<>(responseConsumer),
+        context, callback);
+  }
+
+  /**
+   * Replaces the given producer with one for the request with the compressed body. The given producer is closed once
+   * its request has been generated, since it is not executed itself. The low level client sends the same request again
+   * when it retries on another node, so the header is set rather than added.
+   */
+  private HttpAsyncRequestProducer compress(HttpAsyncRequestProducer requestProducer)
+      throws IOException, HttpException {
+    try (requestProducer) {
+      HttpRequest request = requestProducer.generateRequest();
+      request.setHeader(ACCEPT_ENCODING, "gzip");
+
+      if (request instanceof HttpEntityEnclosingRequest) {
+        HttpEntityEnclosingRequest entityEnclosingRequest = (HttpEntityEnclosingRequest) request;
+        HttpEntity entity = entityEnclosingRequest.getEntity();
+
+        if (entity != null && entity.getContentEncoding() == null && entity.getContentLength() >= minSizeInBytes) {
+          entityEnclosingRequest.setEntity(gzip(entity));
+        }
+      }
+
+      return HttpAsyncMethods.create(requestProducer.getTarget(), request);
+    }
+  }
+
+  private static HttpEntity gzip(HttpEntity entity) throws IOException {
+    var bytes = new ByteArrayOutputStream((int) Math.max(entity.getContentLength() / 4, 256));
+
+    try (var output = new GZIPOutputStream(bytes)) {
+      entity.writeTo(output);
+    }
+
+    var compressedEntity = new NByteArrayEntity(bytes.toByteArray());
+    compressedEntity.setContentType(entity.getContentType());
+    compressedEntity.setContentEncoding("gzip");
+
+    return compressedEntity;
+  }
+
+  private static boolean isGzipped(HttpEntity entity) {
+    Header contentEncoding = entity.getContentEncoding();
+
+    return contentEncoding != null && contentEncoding.getValue().equalsIgnoreCase("gzip");
+  }
+
+  private static class DecompressingResponseConsumer<T> implements HttpAsyncResponseConsumer<T> {
+
+    private final HttpAsyncResponseConsumer<T> responseConsumer;
+
+    DecompressingResponseConsumer(HttpAsyncResponseConsumer<T> responseConsumer) {
+      this.responseConsumer = responseConsumer;
+    }
+
+    @Override
+    public void responseReceived(HttpResponse response) throws IOException, HttpException {
+      responseConsumer.responseReceived(response);
+    }
+
+    @Override
+    public void consumeContent(ContentDecoder decoder, IOControl ioControl) throws IOException {
+      responseConsumer.consumeContent(decoder, ioControl);
+    }
+
+    @Override
+    public void responseCompleted(HttpContext context) {
+      responseConsumer.responseCompleted(context);
+    }
+
+    @Override
+    public void failed(Exception e) {
+      responseConsumer.failed(e);
+    }
+
+    @Override
+    public Exception getException() {
+      return responseConsumer.getException();
+    }
+
+    @Override
+    public T getResult() {
+      T result = responseConsumer.getResult();
+
+      if (result instanceof HttpResponse) {
+        HttpResponse response = (HttpResponse) result;
+        HttpEntity entity = response.getEntity();
+
+        if (entity != null && isGzipped(entity)) {
+          response.setEntity(new GzipDecompressingEntity(entity));
+          response.removeHeaders(CONTENT_ENCODING);
+          response.removeHeaders(CONTENT_LENGTH);
+        }
+      }
+
+      return result;
+    }
+
+    @Override
+    public boolean isDone() {
+      return responseConsumer.isDone();
+    }
+
+    @Override
+    public void close() throws IOException {
+      responseConsumer.close();
+    }
+
+    @Override
+    public boolean cancel() {
+      return responseConsumer.cancel();
+    }
+
+  }
+
+}
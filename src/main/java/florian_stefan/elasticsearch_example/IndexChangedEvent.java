@@ -0,0 +1,28 @@
+package florian_stefan.elasticsearch_example;
+
+import java.util.Set;
+import lombok.Value;
+
+@Value
+public class IndexChangedEvent {
+
+  private String index;
+
+  /**
+   * The ids of the documents that have been indexed or deleted, or an empty set if the whole index has changed.
+   */
+  private Set<String> changedIds;
+
+  public static IndexChangedEvent ofIndex(String index) {
+    return new IndexChangedEvent(index, Set.of());
+  }
+
+  public static IndexChangedEvent ofDocuments(String index, Set<String> changedIds) {
+    return new IndexChangedEvent(index, changedIds);
+  }
+
+  public boolean isWholeIndexChanged() {
+    return changedIds.isEmpty();
+  }
+
+}
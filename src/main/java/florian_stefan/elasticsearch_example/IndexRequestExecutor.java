@@ -1,54 +1,394 @@
 package florian_stefan.elasticsearch_example;
 
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.client.IndicesClient;
 import org.elasticsearch.client.RestHighLevelClient;
-import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class IndexRequestExecutor implements InitializingBean {
+public class IndexRequestExecutor implements DisposableBean {
+
+  private static final String DELTA_FILE_EXTENSION = ".ndjson";
+  private static final String PROCESSED_DIRECTORY = "processed";
+  private static final String FAILED_DIRECTORY = "failed";
+
+  private final ScheduledExecutorService executorService = newSingleThreadScheduledExecutor(this::newIndexingThread);
+  private final AtomicBoolean reindexScheduled = new AtomicBoolean();
 
   private final RestHighLevelClient restHighLevelClient;
+  private final ElasticsearchMetrics elasticsearchMetrics;
   private final IndexRequestParser indexRequestParser;
+  private final BulkRequestDispatcher bulkRequestDispatcher;
+  private final DocumentHashStore documentHashStore;
+  private final IndexWarmer indexWarmer;
+  private final IndexStatus indexStatus;
+  private final ApplicationEventPublisher applicationEventPublisher;
+
+  @Value("${indexing.reindex-on-startup:false}")
+  private boolean reindexOnStartup;
+
+  @Value("${indexing.bootstrap.initial-backoff-millis:1000}")
+  private long bootstrapInitialBackoffMillis;
+
+  @Value("${indexing.bootstrap.max-backoff-millis:60000}")
+  private long bootstrapMaxBackoffMillis;
+
+  @Value("${indexing.wait-for-green-timeout:20s}")
+  private String waitForGreenTimeout;
+
+  @Value("${indexing.delta.directory:}")
+  private String deltaDirectory;
+
+  @Value("${indexing.delta.poll-interval-seconds:30}")
+  private long deltaPollIntervalSeconds;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void bootstrapProductsIndex() {
+    executorService.execute(() -> bootstrapProductsIndexOrRetry(bootstrapInitialBackoffMillis));
+  }
+
+  /**
+   * Schedules a reindex of the products into a new versioned index while searches keep being served from the index
+   * the alias currently points to. Returns false if the index is not ready yet or a reindex is already scheduled.
+   */
+  public boolean reindexProducts() {
+    if (!indexStatus.isReady() || !reindexScheduled.compareAndSet(false, true)) {
+      return false;
+    }
+
+    executorService.execute(this::reindexProductsOrKeepCurrentIndex);
+
+    return true;
+  }
 
   @Override
-  public void afterPropertiesSet() {
-    if (isProductsIndexMissing()) {
-      createProductsIndex();
-      indexProductDocuments();
+  public void destroy() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Creates the products index if it does not exist yet. A failed attempt, for example because Elasticsearch is not up
+   * yet, is retried with an exponentially growing backoff, and the delta files are only polled once the index exists.
+   */
+  private void bootstrapProductsIndexOrRetry(long backoffMillis) {
+    try {
+      Set<String> currentIndices = getCurrentIndices();
+
+      if (currentIndices.isEmpty()) {
+        indexStatus.loading();
+        reindexProducts(currentIndices);
+      }
+      indexStatus.ready();
+    } catch (RuntimeException e) {
+      log.error("Failed to bootstrap the products index, retrying in {} ms.", backoffMillis, e);
+      indexStatus.failed();
+      long nextBackoffMillis = Math.min(backoffMillis * 2, bootstrapMaxBackoffMillis);
+      executorService.schedule(() -> bootstrapProductsIndexOrRetry(nextBackoffMillis), backoffMillis, MILLISECONDS);
+      return;
+    }
+
+    if (reindexOnStartup) {
+      reindexProducts();
+    }
+
+    if (isDeltaIngestionEnabled()) {
+      executorService.scheduleWithFixedDelay(this::ingestDeltaFilesOrLog, 0, deltaPollIntervalSeconds, SECONDS);
     }
   }
 
-  private boolean isProductsIndexMissing() {
+  private void reindexProductsOrKeepCurrentIndex() {
     try {
-      return !restHighLevelClient.indices().exists(indexRequestParser.getGetIndexRequest());
-    } catch (IOException e) {
-      throw new IndexRequestExecutorException(e);
+      indexStatus.reindexing();
+      reindexProducts(getCurrentIndices());
+    } catch (RuntimeException e) {
+      log.error("Failed to reindex the products, searches keep using the current index.", e);
+    } finally {
+      reindexScheduled.set(false);
+      indexStatus.ready();
     }
   }
 
-  private void createProductsIndex() {
+  private void reindexProducts(Set<String> previousIndices) {
+    int version = previousIndices.stream().mapToInt(indexRequestParser::getVersion).max().orElse(0) + 1;
+    String index = indexRequestParser.getVersionedIndex(version);
+
+    Optional<DocumentHashStore.Changes> changes = isDeltaIngestionEnabled()
+        ? Optional.of(documentHashStore.newSnapshot())
+        : Optional.empty();
+    Predicate<DocWriteRequest<?>> filter = changes.isPresent() ? changes.get() : request -> true;
+
+    deleteIndexIfExists(index);
+    execute("create_index", indices -> indices.create(indexRequestParser.getCreateIndexRequest(index)));
+
     try {
-      restHighLevelClient.indices().create(indexRequestParser.getCreateIndexRequest());
+      indexProductDocuments(index, indexRequestParser.getBulkRequests(index, filter));
+      replayDeltaFiles(index, filter);
+      execute("refresh", indices -> indices.refresh(new RefreshRequest(index)));
+      forceMergeOrLog(index);
+      execute("update_settings", indices -> indices.putSettings(indexRequestParser.getRestoreSettingsRequest(index)));
+      waitForGreenOrLog(index);
+      indexWarmer.warmUp(index);
+      execute("update_aliases", indices -> indices.updateAliases(
+          indexRequestParser.getSwapAliasRequest(index, previousIndices)));
+    } catch (RuntimeException e) {
+      deleteIndexAfterFailure(index, e);
+      throw e;
+    }
+
+    log.info("Alias {} now points to index {} (previously {}).", indexRequestParser.getAlias(), index, previousIndices);
+    applicationEventPublisher.publishEvent(IndexChangedEvent.ofIndex(indexRequestParser.getAlias()));
+    changes.ifPresent(this::applyChangesOrLog);
+  }
+
+  /**
+   * Merges the index into a single segment. On a large index the merge takes longer than the socket timeout of the
+   * client, but it keeps running in Elasticsearch and the index is complete without it, so a failure is only logged.
+   */
+  private void forceMergeOrLog(String index) {
+    try {
+      execute("force_merge", indices -> indices.forceMerge(indexRequestParser.getForceMergeRequest(index)));
+    } catch (RuntimeException e) {
+      log.warn("Failed to wait for the force merge of index {}, continuing without it.", index, e);
+    }
+  }
+
+  /**
+   * Waits until the restored replicas of the index are allocated, so that the warm-up reaches them as well. If they
+   * are not allocated in time, for example on a cluster with a single node, the index is used with its primaries.
+   */
+  private void waitForGreenOrLog(String index) {
+    Map<String, String> parameters = Map.of("wait_for_status", "green", "timeout", waitForGreenTimeout);
+
+    try {
+      elasticsearchMetrics.recordRoundTrip("cluster_health", () -> {
+        try {
+          return restHighLevelClient.getLowLevelClient().performRequest("GET", "/_cluster/health/" + index, parameters);
+        } catch (IOException e) {
+          throw new IndexRequestExecutorException(e);
+        }
+      });
+    } catch (RuntimeException e) {
+      log.warn("Index {} did not turn green within {}, warming up its primaries only.", index, waitForGreenTimeout, e);
+    }
+  }
+
+  private boolean isDeltaIngestionEnabled() {
+    return !deltaDirectory.isEmpty();
+  }
+
+  /**
+   * Stores the hashes of indexed documents. The documents are already searchable at this point, so a failure to
+   * persist the hashes is only logged. At worst, deltas after a restart reindex documents they could have skipped.
+   */
+  private void applyChangesOrLog(DocumentHashStore.Changes changes) {
+    try {
+      documentHashStore.apply(changes);
+    } catch (RuntimeException e) {
+      log.error("Failed to store the hashes of the indexed product documents.", e);
+    }
+  }
+
+  /**
+   * Replays the processed delta files into a new index in the order they were ingested, so that a reindex does not
+   * revert the changes they made to the products.
+   */
+  private void replayDeltaFiles(String index, Predicate<DocWriteRequest<?>> filter) {
+    if (!isDeltaIngestionEnabled() || !Files.isDirectory(Paths.get(deltaDirectory, PROCESSED_DIRECTORY))) {
+      return;
+    }
+
+    List<Path> deltaFiles;
+
+    try (var files = Files.list(Paths.get(deltaDirectory, PROCESSED_DIRECTORY))) {
+      deltaFiles = files.filter(file -> file.getFileName().toString().endsWith(DELTA_FILE_EXTENSION))
+          .sorted()
+          .collect(toList());
     } catch (IOException e) {
       throw new IndexRequestExecutorException(e);
     }
+
+    for (Path file : deltaFiles) {
+      indexProductDocuments(index, indexRequestParser.getBulkRequests(index, file, filter));
+    }
+
+    log.info("Replayed {} processed delta files into {}.", deltaFiles.size(), index);
   }
 
-  private void indexProductDocuments() {
+  /**
+   * Indexes the delta files found in the drop directory in the order of their names. Files are only picked up once
+   * they carry the .ndjson extension, so they should be written under a different name and renamed when complete.
+   */
+  private void ingestDeltaFilesOrLog() {
+    if (!indexStatus.isReady()) {
+      return;
+    }
+
+    try (var files = Files.list(Paths.get(deltaDirectory))) {
+      files.filter(file -> file.getFileName().toString().endsWith(DELTA_FILE_EXTENSION))
+          .sorted()
+          .forEach(this::ingestDeltaFile);
+    } catch (IOException | RuntimeException e) {
+      log.error("Failed to ingest the delta files in {}.", deltaDirectory, e);
+    }
+  }
+
+  private void ingestDeltaFile(Path file) {
+    String alias = indexRequestParser.getAlias();
+    DocumentHashStore.Changes changes = documentHashStore.newDelta();
+
     try {
-      restHighLevelClient.bulk(indexRequestParser.getIndexRequests());
+      indexProductDocuments(alias, indexRequestParser.getBulkRequests(alias, file, changes));
+    } catch (RuntimeException e) {
+      log.error("Failed to ingest the delta file {}.", file, e);
+      moveDeltaFile(file, FAILED_DIRECTORY);
+      publishChangedDocuments(alias, changes);
+      return;
+    }
+
+    log.info("Skipped {} unchanged product documents of {}.", changes.getSkippedDocuments(), file);
+    applyChangesOrLog(changes);
+    moveDeltaFile(file, PROCESSED_DIRECTORY);
+    publishChangedDocuments(alias, changes);
+  }
+
+  /**
+   * Lets the caches evict the documents of a delta. A delta that failed partway may still have changed some of its
+   * documents, so their ids are published as well, even though the hashes of the delta are not stored.
+   */
+  private void publishChangedDocuments(String alias, DocumentHashStore.Changes changes) {
+    Set<String> changedIds = changes.getChangedIds();
+
+    if (!changedIds.isEmpty()) {
+      applicationEventPublisher.publishEvent(IndexChangedEvent.ofDocuments(alias, changedIds));
+    }
+  }
+
+  private void moveDeltaFile(Path file, String directory) {
+    try {
+      Path target = Files.createDirectories(file.resolveSibling(directory));
+      Files.move(file, target.resolve(file.getFileName()), REPLACE_EXISTING);
     } catch (IOException e) {
       throw new IndexRequestExecutorException(e);
     }
   }
 
+  /**
+   * Returns the indices the alias points to. A concrete index carrying the name of the alias, as created before the
+   * alias was introduced, is returned as well so that the next reindex replaces it.
+   */
+  private Set<String> getCurrentIndices() {
+    String alias = indexRequestParser.getAlias();
+
+    if (execute("alias_exists", indices -> indices.existsAlias(indexRequestParser.getGetAliasesRequest()))) {
+      return elasticsearchMetrics.recordRoundTrip("get_alias", () -> {
+        try (InputStream content = restHighLevelClient.getLowLevelClient()
+            .performRequest("GET", "/_alias/" + alias).getEntity().getContent()) {
+          return JsonCodec.readIndexNames(content);
+        } catch (IOException e) {
+          throw new IndexRequestExecutorException(e);
+        }
+      });
+    }
+
+    if (execute("index_exists", indices -> indices.exists(indexRequestParser.getGetIndexRequest(alias)))) {
+      return Set.of(alias);
+    }
+
+    return Set.of();
+  }
+
+  private void indexProductDocuments(String index, Stream<BulkRequest> bulkRequests) {
+    try (bulkRequests) {
+      BulkStatistics statistics = bulkRequestDispatcher.dispatch(bulkRequests, indexStatus::indexed);
+
+      log.info("Indexed {} product documents ({} failed) into {} in {} ms at {} docs/s.",
+          statistics.getIndexedDocuments(),
+          statistics.getFailedDocuments(),
+          index,
+          statistics.getElapsed().toMillis(),
+          Math.round(statistics.getDocumentsPerSecond()));
+
+      if (statistics.getFailedDocuments() > 0) {
+        throw new IndexRequestExecutorException("Failed to index " + statistics.getFailedDocuments() + " documents.");
+      }
+    }
+  }
+
+  private void deleteIndexIfExists(String index) {
+    if (execute("index_exists", indices -> indices.exists(indexRequestParser.getGetIndexRequest(index)))) {
+      log.warn("Deleting index {} left over from an incomplete reindex.", index);
+      execute("delete_index", indices -> indices.delete(indexRequestParser.getDeleteIndexRequest(index)));
+    }
+  }
+
+  private void deleteIndexAfterFailure(String index, RuntimeException failure) {
+    try {
+      execute("delete_index", indices -> indices.delete(indexRequestParser.getDeleteIndexRequest(index)));
+    } catch (RuntimeException e) {
+      failure.addSuppressed(e);
+    }
+  }
+
+  private <T> T execute(String operation, IndicesOperation<T> indicesOperation) {
+    return elasticsearchMetrics.recordRoundTrip(operation, () -> {
+      try {
+        return indicesOperation.execute(restHighLevelClient.indices());
+      } catch (IOException e) {
+        throw new IndexRequestExecutorException(e);
+      }
+    });
+  }
+
+  private Thread newIndexingThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "products-indexing");
+    thread.setDaemon(true);
+
+    return thread;
+  }
+
+  @FunctionalInterface
+  private interface IndicesOperation<T> {
+
+    T execute(IndicesClient indices) throws IOException;
+
+  }
+
   private static class IndexRequestExecutorException extends RuntimeException {
 
+    IndexRequestExecutorException(String message) {
+      super(message);
+    }
+
     IndexRequestExecutorException(Throwable cause) {
       super(cause);
     }
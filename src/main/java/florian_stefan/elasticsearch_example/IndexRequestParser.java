@@ -1,22 +1,47 @@
 package florian_stefan.elasticsearch_example;
 
-import static java.util.Collections.emptyList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Stream.concat;
+import static org.elasticsearch.common.xcontent.DeprecationHandler.THROW_UNSUPPORTED_OPERATION;
+import static org.elasticsearch.common.xcontent.NamedXContentRegistry.EMPTY;
 import static org.elasticsearch.common.xcontent.XContentType.JSON;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
 import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser.Token;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
@@ -24,10 +49,14 @@ import org.springframework.stereotype.Component;
 @Component
 public class IndexRequestParser {
 
-  private static final String INDEX = "products";
+  private static final String ALIAS = "products";
+  private static final String VERSION_SEPARATOR = "_v";
   private static final String TYPE = "_doc";
+  private static final String ID_FIELD = "id";
+  private static final String QUOTED_ID_FIELD = "\"" + ID_FIELD + "\"";
 
-  private static StatefulIndexRequestParser UNIT = new IdParser(emptyList());
+  private static final ObjectReader ACTION_READER = new ObjectMapper()
+      .readerFor(new TypeReference<Map<String, Map<String, String>>>() {});
 
   @Value("classpath:mapping.json")
   private Resource mappingResource;
@@ -35,99 +64,277 @@ public class IndexRequestParser {
   @Value("classpath:products.json")
   private Resource productsResource;
 
-  public GetIndexRequest getGetIndexRequest() {
-    return new GetIndexRequest().indices(INDEX);
+  @Value("${indexing.bulk.max-actions:1000}")
+  private int bulkMaxActions;
+
+  @Value("${indexing.bulk.max-size-in-bytes:5242880}")
+  private long bulkMaxSizeInBytes;
+
+  @Value("${indexing.bulk.content-type:JSON}")
+  private XContentType bulkContentType = JSON;
+
+  @Value("${indexing.refresh-interval:1s}")
+  private String refreshInterval;
+
+  @Value("${indexing.number-of-replicas:1}")
+  private int numberOfReplicas;
+
+  public String getAlias() {
+    return ALIAS;
+  }
+
+  public String getVersionedIndex(int version) {
+    return ALIAS + VERSION_SEPARATOR + version;
+  }
+
+  public int getVersion(String index) {
+    String prefix = ALIAS + VERSION_SEPARATOR;
+
+    if (index.startsWith(prefix)) {
+      try {
+        return Integer.parseInt(index.substring(prefix.length()));
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+
+    return 0;
+  }
+
+  public GetIndexRequest getGetIndexRequest(String index) {
+    return new GetIndexRequest().indices(index);
+  }
+
+  public GetAliasesRequest getGetAliasesRequest() {
+    return new GetAliasesRequest(ALIAS);
+  }
+
+  public DeleteIndexRequest getDeleteIndexRequest(String index) {
+    return new DeleteIndexRequest(index);
   }
 
-  public CreateIndexRequest getCreateIndexRequest() {
+  /**
+   * Creates the index without replicas and with refreshes disabled, which avoids indexing every document twice and
+   * producing many tiny segments during the bulk load. {@link #getRestoreSettingsRequest} reverts both afterwards.
+   */
+  public CreateIndexRequest getCreateIndexRequest(String index) {
     try (var lines = Files.lines(Paths.get(mappingResource.getURI()))) {
-      return new CreateIndexRequest(INDEX).mapping(TYPE, lines.collect(joining()), JSON);
+      return new CreateIndexRequest(index)
+          .settings(Settings.builder()
+              .put("index.refresh_interval", "-1")
+              .put("index.number_of_replicas", 0))
+          .mapping(TYPE, lines.collect(joining()), JSON);
     } catch (IOException e) {
       throw new IndexRequestParserException(e);
     }
   }
 
-  public BulkRequest getIndexRequests() {
-    try (var lines = Files.lines(Paths.get(productsResource.getURI()))) {
-      BulkRequest bulkRequest = new BulkRequest();
-      getIndexRequests(lines).forEach(bulkRequest::add);
-      return bulkRequest;
+  public UpdateSettingsRequest getRestoreSettingsRequest(String index) {
+    return new UpdateSettingsRequest(index).settings(Settings.builder()
+        .put("index.refresh_interval", refreshInterval)
+        .put("index.number_of_replicas", numberOfReplicas));
+  }
+
+  public ForceMergeRequest getForceMergeRequest(String index) {
+    return new ForceMergeRequest(index).maxNumSegments(1);
+  }
+
+  /**
+   * Points the alias to the given index and removes the indices it pointed to before in one atomic request. A
+   * concrete index that still carries the name of the alias is removed the same way.
+   */
+  public IndicesAliasesRequest getSwapAliasRequest(String index, Collection<String> previousIndices) {
+    IndicesAliasesRequest indicesAliasesRequest = new IndicesAliasesRequest();
+
+    indicesAliasesRequest.addAliasAction(AliasActions.add().index(index).alias(ALIAS));
+    previousIndices.forEach(previousIndex -> indicesAliasesRequest.addAliasAction(
+        AliasActions.removeIndex().index(previousIndex)));
+
+    return indicesAliasesRequest;
+  }
+
+  public Stream<BulkRequest> getBulkRequests(String index, Predicate<DocWriteRequest<?>> filter) {
+    try {
+      return getBulkRequests(index, Paths.get(productsResource.getURI()), filter);
     } catch (IOException e) {
       throw new IndexRequestParserException(e);
     }
   }
 
-  private Stream<IndexRequest> getIndexRequests(Stream<String> lines) {
-    return lines.reduce(UNIT, StatefulIndexRequestParser::parse, StatefulIndexRequestParser::union).getIndexRequests();
+  /**
+   * Reads index and delete actions from the given file and batches those accepted by the filter into bulk requests.
+   */
+  public Stream<BulkRequest> getBulkRequests(String index, Path file, Predicate<DocWriteRequest<?>> filter) {
+    try {
+      return getBulkRequests(index, Files.lines(file), filter);
+    } catch (IOException e) {
+      throw new IndexRequestParserException(e);
+    }
   }
 
-  private abstract static class StatefulIndexRequestParser {
+  Stream<BulkRequest> getBulkRequests(String index, Stream<String> lines, Predicate<DocWriteRequest<?>> filter) {
+    Iterator<String> nonEmptyLines = lines.filter(line -> !line.trim().isEmpty()).iterator();
+    Iterator<BulkRequest> bulkRequests = new BulkRequestIterator(index, nonEmptyLines, filter);
+
+    return StreamSupport.stream(spliteratorUnknownSize(bulkRequests, ORDERED | NONNULL), false).onClose(lines::close);
+  }
+
+  /**
+   * Adds the id to the source as the keyword field id, because the _id field has no doc values to sort on. The id is
+   * prepended to JSON sources without an id field. Other sources are re-encoded, which also applies the configured
+   * content type. Binary content types are parsed faster by Elasticsearch and take fewer bytes on the wire, but bulk
+   * requests only support JSON and SMILE.
+   */
+  private BytesReference encodeSource(String id, String source) {
+    int start = source.indexOf('{') + 1;
+
+    if (bulkContentType == JSON && start > 0 && !source.contains(QUOTED_ID_FIELD)) {
+      return prependId(id, source, start);
+    }
+
+    try (var parser = JSON.xContent().createParser(EMPTY, THROW_UNSUPPORTED_OPERATION, source)) {
+      XContentBuilder builder = XContentBuilder.builder(bulkContentType.xContent()).startObject().field(ID_FIELD, id);
 
-    private final List<IndexRequest> indexRequests;
+      parser.nextToken();
+      while (parser.nextToken() == Token.FIELD_NAME) {
+        String field = parser.currentName();
 
-    StatefulIndexRequestParser(List<IndexRequest> indexRequests) {
-      this.indexRequests = indexRequests;
+        parser.nextToken();
+        if (field.equals(ID_FIELD)) {
+          parser.skipChildren();
+        } else {
+          builder.field(field).copyCurrentStructure(parser);
+        }
+      }
+
+      return BytesReference.bytes(builder.endObject());
+    } catch (IOException e) {
+      throw new IndexRequestParserException(e);
     }
+  }
 
-    abstract StatefulIndexRequestParser parse(String line);
+  /**
+   * Writes the id field and the remaining source into a single array. Only whitespace can precede the opening brace, so
+   * its position in the string is also its position in the encoded bytes.
+   */
+  private static BytesReference prependId(String id, String source, int start) {
+    int end = start;
 
-    StatefulIndexRequestParser union(StatefulIndexRequestParser other) {
-      return this;
+    while (end < source.length() && Character.isWhitespace(source.charAt(end))) {
+      end++;
     }
 
-    Stream<IndexRequest> getIndexRequests() {
-      return indexRequests.stream();
+    String separator = end < source.length() && source.charAt(end) == '}' ? "" : ",";
+    byte[] prefix = ("{" + QUOTED_ID_FIELD + ":" + JsonCodec.write(id) + separator).getBytes(UTF_8);
+    byte[] encodedSource = source.getBytes(UTF_8);
+    byte[] bytes = Arrays.copyOf(prefix, prefix.length + encodedSource.length - start);
+
+    System.arraycopy(encodedSource, start, bytes, prefix.length, encodedSource.length - start);
+
+    return new BytesArray(bytes);
+  }
+
+  private static Map<String, Map<String, String>> readAction(String line) {
+    try {
+      return ACTION_READER.readValue(line);
+    } catch (IOException e) {
+      throw new IndexRequestParserException(e);
     }
+  }
 
+  private static String readId(Map<String, String> action, String line) {
+    if (action == null || action.get("_id") == null) {
+      throw new IndexRequestParserException("Expected index or delete action with an _id but found: " + line);
+    }
+
+    return action.get("_id");
   }
 
-  private static class IdParser extends StatefulIndexRequestParser {
+  private static void requireCompleteExport(Map<String, String> status, String line) {
+    if (status == null || !"complete".equals(status.get("status"))) {
+      throw new IndexRequestParserException("Expected a complete export but found: " + line);
+    }
+  }
+
+  private class BulkRequestIterator implements Iterator<BulkRequest> {
+
+    private final String index;
+    private final Iterator<String> lines;
+    private final Predicate<DocWriteRequest<?>> filter;
+
+    private DocWriteRequest<?> nextRequest;
 
-    IdParser(List<IndexRequest> indexRequests) {
-      super(indexRequests);
+    BulkRequestIterator(String index, Iterator<String> lines, Predicate<DocWriteRequest<?>> filter) {
+      this.index = index;
+      this.lines = lines;
+      this.filter = filter;
     }
 
     @Override
-    StatefulIndexRequestParser parse(String line) {
-      return new SourceParser(readId(line), getIndexRequests().collect(toList()));
-    }
+    public boolean hasNext() {
+      while (nextRequest == null && lines.hasNext()) {
+        DocWriteRequest<?> request = parseRequest(lines.next());
 
-    @SuppressWarnings("unchecked")
-    private String readId(String line) {
-      try {
-        Map<String, Map<String, String>> lineAsMap = new ObjectMapper().readValue(line, Map.class);
+        if (request != null && filter.test(request)) {
+          nextRequest = request;
+        }
+      }
+
+      return nextRequest != null;
+    }
 
-        return lineAsMap.get("index").get("_id");
-      } catch (IOException e) {
-        throw new IndexRequestParserException(e);
+    @Override
+    public BulkRequest next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
       }
+
+      BulkRequest bulkRequest = new BulkRequest();
+
+      do {
+        bulkRequest.add(nextRequest);
+        nextRequest = null;
+      } while (isBelowLimits(bulkRequest) && hasNext());
+
+      return bulkRequest;
     }
 
-  }
+    /**
+     * Parses the next action, or returns null for the status record that ends an export of the products.
+     */
+    private DocWriteRequest<?> parseRequest(String actionLine) {
+      Map<String, Map<String, String>> action = readAction(actionLine);
 
-  private static class SourceParser extends StatefulIndexRequestParser {
+      if (action.containsKey("export")) {
+        requireCompleteExport(action.get("export"), actionLine);
+        return null;
+      }
 
-    private final String id;
+      if (action.containsKey("delete")) {
+        return new DeleteRequest(index, TYPE, readId(action.get("delete"), actionLine));
+      }
 
-    SourceParser(String id, List<IndexRequest> indexRequests) {
-      super(indexRequests);
+      String id = readId(action.get("index"), actionLine);
 
-      this.id = id;
-    }
+      if (!lines.hasNext()) {
+        throw new IndexRequestParserException("Missing source for document with id " + id);
+      }
 
-    @Override
-    StatefulIndexRequestParser parse(String line) {
-      return new IdParser(appendRequest(new IndexRequest(INDEX, TYPE, id).source(line, JSON)));
+      return new IndexRequest(index, TYPE, id).source(encodeSource(id, lines.next()), bulkContentType);
     }
 
-    private List<IndexRequest> appendRequest(IndexRequest indexRequest) {
-      return concat(getIndexRequests(), Stream.of(indexRequest)).collect(toList());
+    private boolean isBelowLimits(BulkRequest bulkRequest) {
+      return bulkRequest.numberOfActions() < bulkMaxActions && bulkRequest.estimatedSizeInBytes() < bulkMaxSizeInBytes;
     }
 
   }
 
   private static class IndexRequestParserException extends RuntimeException {
 
+    IndexRequestParserException(String message) {
+      super(message);
+    }
+
     IndexRequestParserException(Throwable cause) {
       super(cause);
     }
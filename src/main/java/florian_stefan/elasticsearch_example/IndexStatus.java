@@ -0,0 +1,70 @@
+package florian_stefan.elasticsearch_example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Component
+public class IndexStatus {
+
+  private final AtomicLong indexedDocuments = new AtomicLong();
+
+  private volatile State state = State.STARTING;
+
+  public State getState() {
+    return state;
+  }
+
+  public long getIndexedDocuments() {
+    return indexedDocuments.get();
+  }
+
+  public boolean isReady() {
+    return state == State.READY || state == State.REINDEXING;
+  }
+
+  public void requireReady() {
+    if (!isReady()) {
+      throw new IndexUnavailableException(state);
+    }
+  }
+
+  void loading() {
+    indexedDocuments.set(0);
+    state = State.LOADING;
+  }
+
+  void reindexing() {
+    indexedDocuments.set(0);
+    state = State.REINDEXING;
+  }
+
+  void indexed(long documents) {
+    indexedDocuments.addAndGet(documents);
+  }
+
+  void ready() {
+    state = State.READY;
+  }
+
+  void failed() {
+    state = State.FAILED;
+  }
+
+  public enum State {
+
+    STARTING, LOADING, READY, REINDEXING, FAILED
+
+  }
+
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  private static class IndexUnavailableException extends RuntimeException {
+
+    IndexUnavailableException(State state) {
+      super("The products index is not available yet (" + state + ").");
+    }
+
+  }
+
+}
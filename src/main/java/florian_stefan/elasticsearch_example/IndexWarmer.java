@@ -0,0 +1,94 @@
+package florian_stefan.elasticsearch_example;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replays the facet request and representative searches against a freshly loaded index before the alias is swapped,
+ * so that the first users of the index do not pay for loading field data, filling the caches and compiling the query
+ * automata.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexWarmer {
+
+  private final RestHighLevelClient restHighLevelClient;
+  private final ElasticsearchMetrics elasticsearchMetrics;
+
+  @Value("${indexing.warm-up.enabled:true}")
+  private boolean enabled;
+
+  @Value("${indexing.warm-up.queries:steel,cheese,wine,beef,lid,soup,bread,tea}")
+  private String[] queries;
+
+  /**
+   * Warms the given index up. Failures are only logged, because a cold index still serves correct results.
+   */
+  public void warmUp(String index) {
+    if (!enabled) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    List<SearchRequest> searchRequests = getSearchRequests(index);
+
+    try {
+      for (SearchRequest searchRequest : searchRequests) {
+        elasticsearchMetrics.recordRoundTrip("warm_up", () -> search(searchRequest));
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to warm up index {}.", index, e);
+      return;
+    }
+
+    log.info("Warmed up index {} with {} searches in {} ms.", index, searchRequests.size(),
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private List<SearchRequest> getSearchRequests(String index) {
+    List<SearchRequest> searchRequests = new ArrayList<>();
+
+    searchRequests.add(FacetCache.getSearchRequest(index));
+
+    for (String query : queries) {
+      ProductSearchRequest searchRequest = new ProductSearchRequest();
+      searchRequest.setQuery(query.trim());
+
+      for (QueryTier queryTier : QueryTier.values()) {
+        searchRequests.add(new SearchRequest(index)
+            .source(ProductSearchController.getSearchSource(searchRequest, queryTier)));
+      }
+    }
+
+    return searchRequests;
+  }
+
+  private Void search(SearchRequest searchRequest) {
+    try {
+      restHighLevelClient.search(searchRequest);
+
+      return null;
+    } catch (IOException e) {
+      throw new IndexWarmerException(e);
+    }
+  }
+
+  private static class IndexWarmerException extends RuntimeException {
+
+    IndexWarmerException(Throwable cause) {
+      super(cause);
+    }
+
+  }
+
+}
@@ -0,0 +1,111 @@
+package florian_stefan.elasticsearch_example;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import florian_stefan.elasticsearch_example.ProductSearchController.Category;
+import florian_stefan.elasticsearch_example.ProductSearchController.PriceRange;
+import florian_stefan.elasticsearch_example.ProductSearchController.Status;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+
+final class JsonCodec {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private static final ObjectReader PRODUCT_SEARCH_RESULT_READER = OBJECT_MAPPER.readerFor(ProductSearchResult.class);
+  private static final ObjectReader PRODUCT_LIST_ITEM_READER = OBJECT_MAPPER.readerFor(ProductListItem.class);
+  private static final ObjectReader STATUS_READER = OBJECT_MAPPER.readerFor(Status.class);
+  private static final ObjectReader PRICE_RANGE_READER = OBJECT_MAPPER.readerFor(PriceRange.class);
+  private static final ObjectReader CATEGORY_READER = OBJECT_MAPPER.readerFor(Category.class);
+  private static final ObjectReader SEARCH_CURSOR_READER = OBJECT_MAPPER.readerFor(SearchCursor.class);
+  private static final ObjectReader INDICES_READER = OBJECT_MAPPER
+      .readerFor(new TypeReference<Map<String, Object>>() {});
+  private static final ObjectWriter VALUE_WRITER = OBJECT_MAPPER.writer();
+
+  private JsonCodec() {
+  }
+
+  static ProductSearchResult readProductSearchResult(BytesReference source) {
+    return read(PRODUCT_SEARCH_RESULT_READER, source);
+  }
+
+  static ProductListItem readProductListItem(BytesReference source) {
+    return read(PRODUCT_LIST_ITEM_READER, source);
+  }
+
+  static Status readStatus(String content) {
+    return readIfPresent(STATUS_READER, content);
+  }
+
+  static PriceRange readPriceRange(String content) {
+    return readIfPresent(PRICE_RANGE_READER, content);
+  }
+
+  static Category readCategory(String content) {
+    return readIfPresent(CATEGORY_READER, content);
+  }
+
+  static SearchCursor readSearchCursor(byte[] content) {
+    try {
+      return SEARCH_CURSOR_READER.readValue(content);
+    } catch (IOException e) {
+      throw new JsonCodecException(e);
+    }
+  }
+
+  static Set<String> readIndexNames(InputStream content) {
+    try {
+      Map<String, Object> indices = INDICES_READER.readValue(content);
+
+      return indices.keySet();
+    } catch (IOException e) {
+      throw new JsonCodecException(e);
+    }
+  }
+
+  static String write(Object value) {
+    try {
+      return VALUE_WRITER.writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      throw new JsonCodecException(e);
+    }
+  }
+
+  private static <T> T read(ObjectReader reader, BytesReference source) {
+    BytesRef bytesRef = source.toBytesRef();
+
+    try {
+      return reader.readValue(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+    } catch (IOException e) {
+      throw new JsonCodecException(e);
+    }
+  }
+
+  private static <T> T readIfPresent(ObjectReader reader, String content) {
+    if (content == null || content.trim().isEmpty()) {
+      return null;
+    }
+
+    try {
+      return reader.readValue(content);
+    } catch (IOException e) {
+      throw new JsonCodecException(e);
+    }
+  }
+
+  private static class JsonCodecException extends RuntimeException {
+
+    JsonCodecException(Throwable cause) {
+      super(cause);
+    }
+
+  }
+
+}
@@ -0,0 +1,40 @@
+package florian_stefan.elasticsearch_example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Value;
+
+/**
+ * The products found for a list of ids in the order of the ids, together with the ids no product exists for and the
+ * ids whose products failed to load.
+ */
+@Value
+public class ProductBatch {
+
+  private List<ProductDocument> products;
+  private List<String> missingIds;
+  private List<String> failedIds;
+
+  static ProductBatch of(List<String> ids, Map<String, ProductSearchResult> productsById, Set<String> failedIds) {
+    List<ProductDocument> products = new ArrayList<>(productsById.size());
+    List<String> missingIds = new ArrayList<>();
+    List<String> orderedFailedIds = new ArrayList<>();
+
+    for (String id : ids) {
+      ProductSearchResult product = productsById.get(id);
+
+      if (product != null) {
+        products.add(ProductDocument.of(product));
+      } else if (failedIds.contains(id)) {
+        orderedFailedIds.add(id);
+      } else {
+        missingIds.add(id);
+      }
+    }
+
+    return new ProductBatch(products, missingIds, orderedFailedIds);
+  }
+
+}
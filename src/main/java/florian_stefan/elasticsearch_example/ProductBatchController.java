@@ -0,0 +1,70 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.stream.Collectors.toList;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Looks up several products at once, for pages that show more than one product. The ids can be passed comma separated
+ * or as repeated parameters. Products that are not cached are fetched with a single multi-get, and products that fail
+ * to load are reported without failing the whole batch.
+ */
+@Controller
+@RequiredArgsConstructor
+public class ProductBatchController {
+
+  private final IndexStatus indexStatus;
+  private final ProductCache productCache;
+
+  @Value("${products.batch.max-size:100}")
+  private int maxBatchSize;
+
+  @GetMapping("/products/batch")
+  public CompletableFuture<String> getProductBatch(@RequestParam List<String> ids, Model model) {
+    return lookUpProducts(ids).thenApply(productBatch -> {
+      model.addAttribute("productBatch", productBatch);
+
+      return "product-batch";
+    });
+  }
+
+  @ResponseBody
+  @GetMapping(value = "/products/batch", produces = APPLICATION_JSON_VALUE)
+  public CompletableFuture<ProductBatch> getProductBatch(@RequestParam List<String> ids) {
+    return lookUpProducts(ids);
+  }
+
+  private CompletableFuture<ProductBatch> lookUpProducts(List<String> ids) {
+    indexStatus.requireReady();
+
+    List<String> distinctIds = ids.stream().map(String::trim).filter(id -> !id.isEmpty()).distinct().collect(toList());
+
+    if (distinctIds.size() > maxBatchSize) {
+      throw new ProductBatchTooLargeException(maxBatchSize);
+    }
+
+    return productCache.getProducts(distinctIds).thenApply(productLookup ->
+        ProductBatch.of(distinctIds, productLookup.getProductsById(), productLookup.getFailedIds()));
+  }
+
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  private static class ProductBatchTooLargeException extends RuntimeException {
+
+    ProductBatchTooLargeException(int maxBatchSize) {
+      super("At most " + maxBatchSize + " products can be looked up at once.");
+    }
+
+  }
+
+}
@@ -0,0 +1,178 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class ProductCache {
+
+  private static final String TYPE = "_doc";
+
+  private final SearchRequestExecutor searchRequestExecutor;
+  private final IndexRequestParser indexRequestParser;
+  private final AsyncLoadingCache<String, ProductSearchResult> productsById;
+
+  public ProductCache(SearchRequestExecutor searchRequestExecutor, IndexRequestParser indexRequestParser,
+      MeterRegistry meterRegistry,
+      @Value("${products.cache.maximum-weight-in-bytes:67108864}") long maximumWeightInBytes,
+      @Value("${products.cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+    this.searchRequestExecutor = searchRequestExecutor;
+    this.indexRequestParser = indexRequestParser;
+    this.productsById = Caffeine.newBuilder()
+        .maximumWeight(maximumWeightInBytes)
+        .weigher((String id, ProductSearchResult product) -> product.estimateSizeInBytes())
+        .expireAfterWrite(expireAfterWriteSeconds, SECONDS)
+        .recordStats()
+        .buildAsync(new ProductLoader());
+
+    CaffeineCacheMetrics.monitor(meterRegistry, productsById.synchronous(), "products");
+  }
+
+  public CompletableFuture<ProductSearchResult> getProduct(String id) {
+    return productsById.get(id);
+  }
+
+  /**
+   * Returns the products with the given ids. The products that are not cached yet are loaded with a single multi-get.
+   * Products that do not exist are left out, and so are products that failed to load, whose ids are reported instead.
+   */
+  public CompletableFuture<ProductLookup> getProducts(List<String> ids) {
+    Map<String, CompletableFuture<ProductSearchResult>> products = new HashMap<>();
+    List<String> uncachedIds = new ArrayList<>();
+
+    for (String id : ids) {
+      CompletableFuture<ProductSearchResult> product = productsById.getIfPresent(id);
+
+      if (product == null) {
+        uncachedIds.add(id);
+      } else {
+        products.put(id, product);
+      }
+    }
+
+    if (!uncachedIds.isEmpty()) {
+      products.putAll(loadAll(uncachedIds));
+    }
+
+    return CompletableFuture.allOf(products.values().toArray(new CompletableFuture[0]))
+        .handle((ignored, e) -> collectProducts(products, e));
+  }
+
+  public CacheStats getStats() {
+    return productsById.synchronous().stats();
+  }
+
+  @EventListener
+  public void onIndexChanged(IndexChangedEvent event) {
+    if (event.isWholeIndexChanged()) {
+      productsById.synchronous().invalidateAll();
+    } else {
+      productsById.synchronous().invalidateAll(event.getChangedIds());
+    }
+  }
+
+  private static ProductSearchResult extractProduct(GetResponse getResponse) {
+    if (!getResponse.isExists()) {
+      return null;
+    }
+
+    return JsonCodec.readProductSearchResult(getResponse.getSourceAsBytesRef()).setId(getResponse.getId());
+  }
+
+  /**
+   * Sends a multi-get for the given ids and caches a product for each of them, which completes with the item of its
+   * id. The cache drops the products that do not exist or failed to load once they complete, like any other load.
+   */
+  private Map<String, CompletableFuture<ProductSearchResult>> loadAll(List<String> ids) {
+    MultiGetRequest multiGetRequest = new MultiGetRequest();
+    String alias = indexRequestParser.getAlias();
+
+    ids.forEach(id -> multiGetRequest.add(alias, TYPE, id));
+
+    CompletableFuture<MultiGetResponse> multiGetResponse = searchRequestExecutor.multiGet(multiGetRequest);
+    Map<String, CompletableFuture<ProductSearchResult>> products = new HashMap<>();
+
+    for (int i = 0; i < ids.size(); i++) {
+      int item = i;
+      CompletableFuture<ProductSearchResult> product = multiGetResponse
+          .thenApply(response -> extractItem(response.getResponses()[item]));
+
+      productsById.put(ids.get(i), product);
+      products.put(ids.get(i), product);
+    }
+
+    return products;
+  }
+
+  private static ProductSearchResult extractItem(MultiGetItemResponse itemResponse) {
+    if (itemResponse.isFailed()) {
+      throw new ProductCacheException(itemResponse.getFailure().getFailure());
+    }
+
+    return extractProduct(itemResponse.getResponse());
+  }
+
+  private static ProductLookup collectProducts(Map<String, CompletableFuture<ProductSearchResult>> products,
+      Throwable failure) {
+    Map<String, ProductSearchResult> loadedProductsById = new HashMap<>();
+    Set<String> failedIds = new HashSet<>();
+
+    products.forEach((id, product) -> {
+      if (product.isCompletedExceptionally()) {
+        failedIds.add(id);
+      } else if (product.join() != null) {
+        loadedProductsById.put(id, product.join());
+      }
+    });
+
+    if (!failedIds.isEmpty()) {
+      log.warn("Failed to load the products with the ids {}.", failedIds, failure);
+    }
+
+    return new ProductLookup(loadedProductsById, failedIds);
+  }
+
+  private class ProductLoader implements AsyncCacheLoader<String, ProductSearchResult> {
+
+    @Override
+    public CompletableFuture<ProductSearchResult> asyncLoad(String id, Executor executor) {
+      GetRequest getRequest = new GetRequest(indexRequestParser.getAlias(), TYPE, id);
+
+      return searchRequestExecutor.get(getRequest).thenApply(ProductCache::extractProduct);
+    }
+
+  }
+
+  private static class ProductCacheException extends RuntimeException {
+
+    ProductCacheException(Throwable cause) {
+      super(cause);
+    }
+
+  }
+
+}
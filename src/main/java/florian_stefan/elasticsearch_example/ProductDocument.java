@@ -0,0 +1,34 @@
+package florian_stefan.elasticsearch_example;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * The fields of a product as they are indexed, for clients that read products as JSON. Unlike the getters of
+ * {@link ProductSearchResult}, which format the fields for display, categories and tags are lists of their names.
+ */
+@Value
+public class ProductDocument {
+
+  private String id;
+  private String name;
+  private String description;
+  private String status;
+  private double price;
+  private int quantity;
+  private List<String> categories;
+  private List<String> tags;
+
+  static ProductDocument of(ProductSearchResult searchResult) {
+    return new ProductDocument(
+        searchResult.getId(),
+        searchResult.getName(),
+        searchResult.getDescription(),
+        searchResult.getStatus(),
+        searchResult.getPrice(),
+        searchResult.getQuantity(),
+        searchResult.getCategoryNames(),
+        searchResult.getTagNames());
+  }
+
+}
@@ -0,0 +1,40 @@
+package florian_stefan.elasticsearch_example;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+@RestController
+@RequiredArgsConstructor
+public class ProductExportController {
+
+  private final IndexStatus indexStatus;
+  private final ProductExporter productExporter;
+
+  @Value("${export.timeout-millis:3600000}")
+  private long timeoutMillis;
+
+  /**
+   * Streams the products matching the filters as NDJSON, ending with a status record that tells whether the export is
+   * complete. The export runs as an asynchronous task with its own timeout, because it takes much longer than the
+   * default timeout of asynchronous requests allows.
+   */
+  @GetMapping("/products/export")
+  public WebAsyncTask<Void> exportProducts(ProductSearchRequest searchRequest, HttpServletResponse response) {
+    indexStatus.requireReady();
+
+    response.setContentType("application/x-ndjson");
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products.ndjson\"");
+
+    return new WebAsyncTask<>(timeoutMillis, () -> {
+      productExporter.export(searchRequest, response.getOutputStream());
+      return null;
+    });
+  }
+
+}
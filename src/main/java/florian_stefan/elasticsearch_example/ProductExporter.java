@@ -0,0 +1,308 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exports the products matching a search request in the format of the bulk data, using a sliced scroll whose slices
+ * are read in parallel. Every batch is written to the output as soon as it arrives, so the memory used only depends on
+ * the number of slices and the batch size. The query text is matched with the fuzzy tier, which matches a superset of
+ * the products any result page can show. The id field added while indexing is left out, so that the output has the
+ * format of products.json.
+ *
+ * <p>At most export.max-concurrent-exports exports run at the same time, so the threads and scroll contexts held by
+ * exports never exceed that number times the number of slices. Further exports are rejected, as are all exports while
+ * the circuit breaker is open.
+ *
+ * <p>The breaker is only consulted when an export starts. The search and scroll calls are synchronous and bypass the
+ * {@link SearchRequestExecutor}, so they are neither subject to its latency budgets and concurrency limit nor counted
+ * by the breaker: an export that fails halfway does not open it, and one that is running when it opens reads on until
+ * it completes or fails.
+ */
+@Slf4j
+@Component
+public class ProductExporter implements DisposableBean {
+
+  private static final String ID_FIELD = "id";
+
+  private final RestHighLevelClient restHighLevelClient;
+  private final ElasticsearchMetrics elasticsearchMetrics;
+  private final CircuitBreaker circuitBreaker;
+  private final IndexRequestParser indexRequestParser;
+  private final Semaphore runningExports;
+  private final ExecutorService executorService;
+  private final int slices;
+  private final int batchSize;
+  private final long scrollKeepAliveSeconds;
+
+  public ProductExporter(RestHighLevelClient restHighLevelClient, ElasticsearchMetrics elasticsearchMetrics,
+      CircuitBreaker circuitBreaker, IndexRequestParser indexRequestParser,
+      @Value("${export.max-concurrent-exports:2}") int maxConcurrentExports,
+      @Value("${export.slices:2}") int slices,
+      @Value("${export.batch-size:1000}") int batchSize,
+      @Value("${export.scroll-keep-alive-seconds:60}") long scrollKeepAliveSeconds) {
+    this.restHighLevelClient = restHighLevelClient;
+    this.elasticsearchMetrics = elasticsearchMetrics;
+    this.circuitBreaker = circuitBreaker;
+    this.indexRequestParser = indexRequestParser;
+    this.runningExports = new Semaphore(maxConcurrentExports);
+    this.executorService = Executors.newFixedThreadPool(maxConcurrentExports * slices, this::newExportThread);
+    this.slices = slices;
+    this.batchSize = batchSize;
+    this.scrollKeepAliveSeconds = scrollKeepAliveSeconds;
+  }
+
+  /**
+   * Writes the products to the output, followed by a status record, and returns their number. The response has usually
+   * been committed by the time an export fails, so the status record is the only sign of the failure.
+   */
+  public long export(ProductSearchRequest searchRequest, OutputStream output) {
+    if (circuitBreaker.isOpen()) {
+      throw new ExportRejectedException("Elasticsearch is unavailable, exports are rejected until it recovers.");
+    }
+    if (!runningExports.tryAcquire()) {
+      throw new ExportRejectedException("Too many exports are running, try again later.");
+    }
+
+    try {
+      return exportSlices(searchRequest, output);
+    } finally {
+      runningExports.release();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    executorService.shutdownNow();
+  }
+
+  private long exportSlices(ProductSearchRequest searchRequest, OutputStream output) {
+    long start = System.nanoTime();
+    ExportOutput exportOutput = new ExportOutput(output);
+    List<Future<?>> exports = new ArrayList<>();
+
+    for (int slice = 0; slice < slices; slice++) {
+      SearchRequest request = getSearchRequest(searchRequest, slice);
+
+      exports.add(executorService.submit(() -> {
+        exportSlice(request, exportOutput);
+        return null;
+      }));
+    }
+
+    try {
+      for (Future<?> export : exports) {
+        export.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw exportOutput.fail(new ProductExportException(e));
+    } catch (ExecutionException e) {
+      throw exportOutput.fail(new ProductExportException(e.getCause()));
+    } finally {
+      exports.forEach(export -> export.cancel(true));
+    }
+
+    long exportedProducts = exportOutput.complete();
+
+    log.info("Exported {} products in {} ms.", exportedProducts, (System.nanoTime() - start) / 1_000_000);
+
+    return exportedProducts;
+  }
+
+  private SearchRequest getSearchRequest(ProductSearchRequest searchRequest, int slice) {
+    SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+        .query(ProductSearchController.getFilteredQuery(searchRequest, QueryTier.FUZZY))
+        .fetchSource(null, ID_FIELD)
+        .sort("_doc", SortOrder.ASC)
+        .size(batchSize);
+
+    if (slices > 1) {
+      sourceBuilder.slice(new SliceBuilder(slice, slices));
+    }
+
+    return new SearchRequest(indexRequestParser.getAlias()).source(sourceBuilder).scroll(getScrollKeepAlive());
+  }
+
+  private void exportSlice(SearchRequest searchRequest, ExportOutput exportOutput) throws IOException {
+    SearchResponse searchResponse = elasticsearchMetrics.recordRoundTrip("export", () -> search(searchRequest));
+
+    try {
+      while (searchResponse.getHits().getHits().length > 0) {
+        exportOutput.write(encodeBatch(searchResponse.getHits().getHits()), searchResponse.getHits().getHits().length);
+
+        SearchScrollRequest scrollRequest = new SearchScrollRequest(searchResponse.getScrollId())
+            .scroll(getScrollKeepAlive());
+        searchResponse = elasticsearchMetrics.recordRoundTrip("export_scroll", () -> scroll(scrollRequest));
+      }
+    } finally {
+      clearScroll(searchResponse.getScrollId());
+    }
+  }
+
+  /**
+   * Encodes the action and source line of every hit. The batch is encoded before the output is locked, so that slices
+   * only wait for each other while writing.
+   */
+  private static ByteArrayOutputStream encodeBatch(SearchHit[] searchHits) throws IOException {
+    ByteArrayOutputStream batch = new ByteArrayOutputStream(searchHits.length * 1024);
+
+    for (SearchHit searchHit : searchHits) {
+      batch.write(("{\"index\":{\"_id\":" + JsonCodec.write(searchHit.getId()) + "}}\n").getBytes(UTF_8));
+      searchHit.getSourceRef().writeTo(batch);
+      batch.write('\n');
+    }
+
+    return batch;
+  }
+
+  private SearchResponse search(SearchRequest searchRequest) {
+    try {
+      return restHighLevelClient.search(searchRequest);
+    } catch (IOException e) {
+      throw new ProductExportException(e);
+    }
+  }
+
+  private SearchResponse scroll(SearchScrollRequest scrollRequest) {
+    try {
+      return restHighLevelClient.searchScroll(scrollRequest);
+    } catch (IOException e) {
+      throw new ProductExportException(e);
+    }
+  }
+
+  private void clearScroll(String scrollId) {
+    ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+    clearScrollRequest.addScrollId(scrollId);
+
+    try {
+      restHighLevelClient.clearScroll(clearScrollRequest);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to clear scroll {}.", scrollId, e);
+    }
+  }
+
+  private TimeValue getScrollKeepAlive() {
+    return TimeValue.timeValueSeconds(scrollKeepAliveSeconds);
+  }
+
+  private Thread newExportThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "products-export");
+    thread.setDaemon(true);
+
+    return thread;
+  }
+
+  /**
+   * Serializes the writes of the slices and ends the output with a status record, which is the only way for consumers
+   * to tell a complete export from one that was cut off: {"export":{"status":"complete","products":...}} after a
+   * successful export, and a status of failed together with an error otherwise. Batches arriving after the status
+   * record are rejected.
+   */
+  private static class ExportOutput {
+
+    private final OutputStream output;
+
+    private long exportedProducts;
+    private boolean finished;
+
+    ExportOutput(OutputStream output) {
+      this.output = output;
+    }
+
+    synchronized void write(ByteArrayOutputStream batch, int products) throws IOException {
+      if (finished) {
+        throw new ProductExportException("The export has already finished.");
+      }
+
+      batch.writeTo(output);
+      output.flush();
+      exportedProducts += products;
+    }
+
+    synchronized long complete() {
+      try {
+        finish("{\"export\":{\"status\":\"complete\",\"products\":" + exportedProducts + "}}\n");
+      } catch (IOException e) {
+        throw new ProductExportException(e);
+      }
+
+      return exportedProducts;
+    }
+
+    synchronized ProductExportException fail(ProductExportException failure) {
+      Throwable cause = failure;
+
+      while (cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+
+      try {
+        finish("{\"export\":{\"status\":\"failed\",\"products\":" + exportedProducts + ",\"error\":"
+            + JsonCodec.write(cause.toString()) + "}}\n");
+      } catch (IOException | RuntimeException e) {
+        failure.addSuppressed(e);
+      }
+
+      return failure;
+    }
+
+    private void finish(String statusRecord) throws IOException {
+      finished = true;
+      output.write(statusRecord.getBytes(UTF_8));
+      output.flush();
+    }
+
+  }
+
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  private static class ExportRejectedException extends RuntimeException {
+
+    ExportRejectedException(String message) {
+      super(message);
+    }
+
+  }
+
+  private static class ProductExportException extends RuntimeException {
+
+    ProductExportException(String message) {
+      super(message);
+    }
+
+    ProductExportException(Throwable cause) {
+      super(cause);
+    }
+
+  }
+
+}
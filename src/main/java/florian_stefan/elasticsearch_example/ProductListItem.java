@@ -0,0 +1,63 @@
+package florian_stefan.elasticsearch_example;
+
+import static florian_stefan.elasticsearch_example.ProductSearchResult.length;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import florian_stefan.elasticsearch_example.ProductSearchResult.Category;
+import java.util.List;
+import lombok.Data;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProductListItem {
+
+  static final String[] SOURCE_INCLUDES = {"name", "status", "price", "categories.name"};
+  static final String SHORT_DESCRIPTION_FIELD = "description";
+
+  private static final int SHORT_DESCRIPTION_LENGTH = 200;
+
+  private String id;
+  private String name;
+  private String status;
+  private double price;
+  private List<Category> categories;
+  private String shortDescription;
+
+  public ProductListItem setId(String id) {
+    this.id = id;
+
+    return this;
+  }
+
+  public ProductListItem setShortDescription(String shortDescription) {
+    this.shortDescription = shortDescription;
+
+    return this;
+  }
+
+  /**
+   * Cuts the short description out of the description on the shards, so that the description itself is neither
+   * fetched nor decoded. It is the passage that matches the query best, or the beginning of the description if nothing
+   * matches. The empty tags keep it plain text.
+   */
+  static HighlightBuilder getShortDescriptionHighlighter() {
+    return new HighlightBuilder()
+        .field(new HighlightBuilder.Field(SHORT_DESCRIPTION_FIELD)
+            .fragmentSize(SHORT_DESCRIPTION_LENGTH)
+            .numOfFragments(1)
+            .noMatchSize(SHORT_DESCRIPTION_LENGTH))
+        .preTags("")
+        .postTags("");
+  }
+
+  public String getCategories() {
+    return String.join(", ", ProductSearchResult.getCategoryNames(categories));
+  }
+
+  int estimateSizeInBytes() {
+    return 48 + 2 * (length(id) + length(name) + length(status) + length(shortDescription))
+        + ProductSearchResult.estimateSizeInBytes(categories);
+  }
+
+}
@@ -0,0 +1,16 @@
+package florian_stefan.elasticsearch_example;
+
+import java.util.Map;
+import java.util.Set;
+import lombok.Value;
+
+/**
+ * The products found for a set of ids, together with the ids whose products failed to load.
+ */
+@Value
+public class ProductLookup {
+
+  private Map<String, ProductSearchResult> productsById;
+  private Set<String> failedIds;
+
+}
@@ -2,268 +2,243 @@ package florian_stefan.elasticsearch_example;
 
 import static java.lang.Double.parseDouble;
 import static java.lang.Math.min;
-import static java.util.Arrays.stream;
-import static java.util.stream.Collectors.toList;
-import static org.apache.lucene.search.join.ScoreMode.Avg;
+import static java.util.stream.Collectors.joining;
 import static org.elasticsearch.common.unit.Fuzziness.AUTO;
-import static org.elasticsearch.search.aggregations.support.ValueType.STRING;
+import static org.elasticsearch.index.query.Operator.AND;
+import static org.elasticsearch.search.sort.SortOrder.ASC;
+import static org.elasticsearch.search.sort.SortOrder.DESC;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
-import org.elasticsearch.action.get.GetRequest;
-import org.elasticsearch.action.get.GetResponse;
-import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.MatchAllQueryBuilder;
 import org.elasticsearch.index.query.MatchQueryBuilder;
-import org.elasticsearch.index.query.NestedQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.index.query.TermQueryBuilder;
-import org.elasticsearch.search.SearchHit;
-import org.elasticsearch.search.aggregations.bucket.nested.Nested;
-import org.elasticsearch.search.aggregations.bucket.nested.NestedAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.range.Range;
-import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
-import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.ScoreSortBuilder;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
 @Controller
 @RequiredArgsConstructor
 public class ProductSearchController {
 
   private static final int RESULT_PAGE_SIZE = 5;
-  private static final int PRICE_RANGE_LENGTH = 25;
+  private static final int MAX_PAGE_WITHOUT_CURSOR = 10;
+  private static final int FUZZY_PREFIX_LENGTH = 1;
+  private static final int FUZZY_MAX_EXPANSIONS = 10;
 
-  private final RestHighLevelClient restHighLevelClient;
+  private final IndexStatus indexStatus;
+  private final FacetCache facetCache;
+  private final ProductCache productCache;
+  private final SearchResultCache searchResultCache;
 
   @GetMapping
-  public String getSearchForm(Model model) {
-    model.addAttribute("searchRequest", new ProductSearchRequest());
+  public CompletableFuture<String> getSearchForm(Model model) {
+    indexStatus.requireReady();
 
-    prepareFilters(model);
+    model.addAttribute("searchRequest", new ProductSearchRequest());
 
-    return "product-list";
+    return prepareFilters(model).thenApply(ignored -> "product-list");
   }
 
   @GetMapping
   @RequestMapping("/products")
-  public String getSearchResult(ProductSearchRequest searchRequest, Model model) {
-    model.addAttribute("searchRequest", searchRequest);
+  public CompletableFuture<String> getSearchResult(ProductSearchRequest searchRequest, Model model) {
+    indexStatus.requireReady();
 
-    prepareFilters(model);
-    searchProducts(searchRequest, model);
+    model.addAttribute("searchRequest", searchRequest);
 
-    return "product-list";
+    return searchProducts(searchRequest, model).thenApply(ignored -> "product-list");
   }
 
   @GetMapping
   @RequestMapping("/products/{id}")
-  public String getSearchResult(@PathVariable String id, Model model) {
-    searchProduct(id, model);
+  public CompletableFuture<String> getSearchResult(@PathVariable String id, Model model) {
+    indexStatus.requireReady();
 
-    return "product-view";
+    return searchProduct(id, model).thenApply(ignored -> "product-view");
   }
 
-  private void prepareFilters(Model model) {
-    SearchResponse searchResponse = executeAggregations();
-    List<Status> statuses = extractStatuses(searchResponse);
-    List<PriceRange> priceRanges = extractPriceRanges(searchResponse);
-    List<Category> categories = extractCategories(searchResponse);
-
-    model.addAttribute("statuses", statuses);
-    model.addAttribute("priceRanges", priceRanges);
-    model.addAttribute("categories", categories);
+  private CompletableFuture<Void> prepareFilters(Model model) {
+    return facetCache.getFacets().thenAccept(facets -> prepareFilters(facets, model));
   }
 
-  private SearchResponse executeAggregations() {
-    try {
-      SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
-          .query(new MatchAllQueryBuilder())
-          .aggregation(getStatusAggregation())
-          .aggregation(getPriceAggregation())
-          .aggregation(getCategoriesAggregation())
-          .size(0);
-
-      return restHighLevelClient.search(new SearchRequest("products").source(sourceBuilder));
-    } catch (IOException e) {
-      throw new ProductSearchException(e);
-    }
+  private void prepareFilters(Facets facets, Model model) {
+    model.addAttribute("statuses", facets.getStatuses());
+    model.addAttribute("priceRanges", facets.getPriceRanges());
+    model.addAttribute("categories", facets.getCategories());
   }
 
-  private TermsAggregationBuilder getStatusAggregation() {
-    return new TermsAggregationBuilder("statuses", STRING).field("status");
+  private CompletableFuture<Void> searchProducts(ProductSearchRequest searchRequest, Model model) {
+    return searchResultCache.getSearchPage(searchRequest).thenAccept(page -> prepareSearchResults(page, model));
   }
 
-  private RangeAggregationBuilder getPriceAggregation() {
-    RangeAggregationBuilder aggregationBuilder = new RangeAggregationBuilder("price_ranges").field("price");
-
-    for (int from = 0, to = PRICE_RANGE_LENGTH; from < 100; from += PRICE_RANGE_LENGTH, to += PRICE_RANGE_LENGTH) {
-      aggregationBuilder.addRange(from, to);
+  private void prepareSearchResults(ProductSearchPage page, Model model) {
+    if (page.getPreviousCursor() != null) {
+      model.addAttribute("previousCursor", page.getPreviousCursor());
+    }
+    model.addAttribute("pageInfo", page.getPageInfo());
+    if (page.getNextCursor() != null) {
+      model.addAttribute("nextCursor", page.getNextCursor());
     }
+    model.addAttribute("searchResults", page.getSearchResults());
 
-    return aggregationBuilder;
+    prepareFilters(page.getFacets(), model);
   }
 
-  private NestedAggregationBuilder getCategoriesAggregation() {
-    return new NestedAggregationBuilder("categories", "categories").subAggregation(getCategoriesCountAggregation());
-  }
+  static SearchSourceBuilder getSearchSource(ProductSearchRequest searchRequest, QueryTier queryTier) {
+    Map<String, QueryBuilder> filters = getFilters(searchRequest);
+    SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+        .query(getQuery(searchRequest, queryTier))
+        .fetchSource(ProductListItem.SOURCE_INCLUDES, null)
+        .highlighter(ProductListItem.getShortDescriptionHighlighter())
+        .size(RESULT_PAGE_SIZE);
 
-  private TermsAggregationBuilder getCategoriesCountAggregation() {
-    return new TermsAggregationBuilder("category_counts", STRING).field("categories.name");
+    appendPagination(sourceBuilder, searchRequest);
+    if (!filters.isEmpty()) {
+      sourceBuilder.postFilter(Facets.combine(filters.values()));
+    }
+    return Facets.appendAggregations(sourceBuilder, filters);
   }
 
-  private List<Status> extractStatuses(SearchResponse searchResponse) {
-    Terms statuses = searchResponse.getAggregations().get("statuses");
+  private static void appendPagination(SearchSourceBuilder sourceBuilder, ProductSearchRequest searchRequest) {
+    SearchCursor cursor = searchRequest.getSearchCursorOrNull();
+    boolean reverse = cursor != null && cursor.isReverse();
 
-    return statuses.getBuckets().stream().map(Status::of).collect(toList());
-  }
-
-  private List<PriceRange> extractPriceRanges(SearchResponse searchResponse) {
-    Range priceRanges = searchResponse.getAggregations().get("price_ranges");
+    sourceBuilder
+        .sort(new ScoreSortBuilder().order(reverse ? ASC : DESC))
+        .sort(new FieldSortBuilder("id").order(reverse ? DESC : ASC));
 
-    return priceRanges.getBuckets().stream().map(PriceRange::of).collect(toList());
+    if (cursor == null) {
+      sourceBuilder.from(searchRequest.getFrom());
+    } else {
+      sourceBuilder.searchAfter(cursor.getSortValues().toArray());
+    }
   }
 
-  private List<Category> extractCategories(SearchResponse searchResponse) {
-    Nested categories = searchResponse.getAggregations().get("categories");
-    Terms categoryCounts = categories.getAggregations().get("category_counts");
+  static BoolQueryBuilder getQuery(ProductSearchRequest searchRequest, QueryTier queryTier) {
+    BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
+    String query = normalizeQuery(searchRequest.getQuery());
+
+    if (queryTier == QueryTier.EXACT) {
+      appendExactQueryIfPresent(queryBuilder, query);
+    } else {
+      tokenizeQueryAndAppendTokens(queryBuilder, query);
+    }
 
-    return categoryCounts.getBuckets().stream().map(Category::of).collect(toList());
+    return queryBuilder;
   }
 
-  private void searchProducts(ProductSearchRequest searchRequest, Model model) {
-    SearchResponse searchResponse = executeSearch(searchRequest);
-    long totalHits = extractTotalHits(searchResponse);
-    List<ProductSearchResult> productSearchResults = extractProductSearchResults(searchResponse);
+  /**
+   * Returns the query with all filters applied, for when no facets are computed that would need the unfiltered hits.
+   */
+  static BoolQueryBuilder getFilteredQuery(ProductSearchRequest searchRequest, QueryTier queryTier) {
+    BoolQueryBuilder queryBuilder = getQuery(searchRequest, queryTier);
 
-    if (searchRequest.hasPreviousPage()) {
-      model.addAttribute("previousPage", searchRequest.getPreviousPage());
-    }
-    model.addAttribute("pageInfo", searchRequest.getPageInfo(totalHits));
-    if (searchRequest.hasNextPage(totalHits)) {
-      model.addAttribute("nextPage", searchRequest.getNextPage());
-    }
-    model.addAttribute("searchResults", productSearchResults);
+    getFilters(searchRequest).values().forEach(queryBuilder::filter);
+
+    return queryBuilder;
   }
 
-  private SearchResponse executeSearch(ProductSearchRequest searchRequest) {
-    try {
-      SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
-          .query(getQuery(searchRequest))
-          .size(RESULT_PAGE_SIZE)
-          .from(searchRequest.getFrom());
+  private static Map<String, QueryBuilder> getFilters(ProductSearchRequest searchRequest) {
+    Map<String, QueryBuilder> filters = new HashMap<>();
 
-      return restHighLevelClient.search(new SearchRequest("products").source(sourceBuilder));
-    } catch (IOException e) {
-      throw new ProductSearchException(e);
-    }
+    appendStatusFilterIfPresent(filters, JsonCodec.readStatus(searchRequest.getStatus()));
+    appendPriceRangeFilterIfPresent(filters, JsonCodec.readPriceRange(searchRequest.getPriceRange()));
+    appendCategoryFilterIfPresent(filters, JsonCodec.readCategory(searchRequest.getCategory()));
+
+    return filters;
   }
 
-  private BoolQueryBuilder getQuery(ProductSearchRequest searchRequest) {
-    BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
+  /**
+   * Lowercases, sorts and deduplicates the tokens of the query. The tokens are combined with must clauses and analyzed
+   * by a lowercasing analyzer anyway, so the normalized query matches the same products.
+   */
+  static String normalizeQuery(String query) {
+    if (query == null) {
+      return "";
+    }
 
-    tokenizeQueryAndAppendTokens(queryBuilder, searchRequest.getQuery());
-    appendStatusFilterIfPresent(queryBuilder, deserialize(searchRequest.getStatus(), Status.class));
-    appendPriceRangeFilterIfPresent(queryBuilder, deserialize(searchRequest.getPriceRange(), PriceRange.class));
-    appendCategoryFilterIfPresent(queryBuilder, deserialize(searchRequest.getCategory(), Category.class));
+    return Arrays.stream(query.split("\\s+"))
+        .filter(token -> !token.isEmpty())
+        .map(token -> token.toLowerCase(Locale.ROOT))
+        .distinct()
+        .sorted()
+        .collect(joining(" "));
+  }
 
-    return queryBuilder;
+  private static void appendExactQueryIfPresent(BoolQueryBuilder queryBuilder, String query) {
+    if (!query.isEmpty()) {
+      queryBuilder.must(new MatchQueryBuilder("name", query).operator(AND));
+    }
   }
 
-  private void tokenizeQueryAndAppendTokens(BoolQueryBuilder queryBuilder, String query) {
+  /**
+   * Appends one fuzzy clause per token. The first character of every term has to match and each token expands to a
+   * bounded number of terms, which keeps long queries from enumerating large parts of the terms dictionary.
+   */
+  private static void tokenizeQueryAndAppendTokens(BoolQueryBuilder queryBuilder, String query) {
     StringTokenizer stringTokenizer = new StringTokenizer(query, " ");
 
     while (stringTokenizer.hasMoreTokens()) {
       String token = stringTokenizer.nextToken();
-      queryBuilder.must(new MatchQueryBuilder("name", token).fuzziness(AUTO));
+      queryBuilder.must(new MatchQueryBuilder("name", token)
+          .fuzziness(AUTO)
+          .prefixLength(FUZZY_PREFIX_LENGTH)
+          .maxExpansions(FUZZY_MAX_EXPANSIONS));
     }
   }
 
-  private void appendStatusFilterIfPresent(BoolQueryBuilder queryBuilder, Status status) {
+  private static void appendStatusFilterIfPresent(Map<String, QueryBuilder> filters, Status status) {
     if (status != null) {
-      queryBuilder.filter(new TermQueryBuilder("status", status.getName()));
+      filters.put(Facets.STATUSES, new TermQueryBuilder("status", status.getName()));
     }
   }
 
-  private void appendPriceRangeFilterIfPresent(BoolQueryBuilder queryBuilder, PriceRange priceRange) {
+  private static void appendPriceRangeFilterIfPresent(Map<String, QueryBuilder> filters, PriceRange priceRange) {
     if (priceRange != null) {
-      queryBuilder.filter(new RangeQueryBuilder("price").gte(priceRange.getFrom()).lte(priceRange.getTo()));
-    }
-  }
+      RangeQueryBuilder query = new RangeQueryBuilder("price").gte(priceRange.getFrom()).lte(priceRange.getTo());
 
-  private void appendCategoryFilterIfPresent(BoolQueryBuilder queryBuilder, Category category) {
-    if (category != null) {
-      TermQueryBuilder query = new TermQueryBuilder("categories.name", category.getName());
-
-      queryBuilder.filter(new NestedQueryBuilder("categories", query, Avg));
+      filters.put(Facets.PRICE_RANGES, query);
     }
   }
 
-  private long extractTotalHits(SearchResponse searchResponse) {
-    return searchResponse.getHits().getTotalHits();
-  }
-
-  private List<ProductSearchResult> extractProductSearchResults(SearchResponse searchResponse) {
-    return stream(searchResponse.getHits().getHits()).map(this::parseProductSearchResult).collect(toList());
-  }
-
-  private ProductSearchResult parseProductSearchResult(SearchHit searchHit) {
-    return parseProductSearchResult(searchHit.getSourceAsString()).setId(searchHit.getId());
-  }
-
-  private void searchProduct(String id, Model model) {
-    GetResponse getResponse = executeSearch(id);
-    ProductSearchResult searchResult = extractProductSearchResult(getResponse);
-
-    model.addAttribute("searchResult", searchResult);
-  }
-
-  private GetResponse executeSearch(String id) {
-    try {
-      return restHighLevelClient.get(new GetRequest("products", "_doc", id));
-    } catch (IOException e) {
-      throw new ProductSearchException(e);
+  private static void appendCategoryFilterIfPresent(Map<String, QueryBuilder> filters, Category category) {
+    if (category != null) {
+      filters.put(Facets.CATEGORIES, new TermQueryBuilder("category_names", category.getName()));
     }
   }
 
-  private ProductSearchResult extractProductSearchResult(GetResponse getResponse) {
-    return parseProductSearchResult(getResponse.getSourceAsString()).setId(getResponse.getId());
-  }
-
-  private ProductSearchResult parseProductSearchResult(String sourceAsString) {
-    try {
-      return new ObjectMapper().readValue(sourceAsString, ProductSearchResult.class);
-    } catch (IOException e) {
-      throw new ProductSearchException(e);
-    }
+  private CompletableFuture<Void> searchProduct(String id, Model model) {
+    return productCache.getProduct(id).thenAccept(searchResult -> prepareSearchResult(id, searchResult, model));
   }
 
-  private static <T> T deserialize(String content, Class<T> valueType) {
-    if (content == null || content.trim().isEmpty()) {
-      return null;
+  private void prepareSearchResult(String id, ProductSearchResult searchResult, Model model) {
+    if (searchResult == null) {
+      throw new ProductNotFoundException(id);
     }
 
-    try {
-      return new ObjectMapper().readValue(content, valueType);
-    } catch (IOException e) {
-      throw new ProductSearchException(e);
-    }
+    model.addAttribute("searchResult", searchResult);
   }
 
   @Data
@@ -274,9 +249,33 @@ public class ProductSearchController {
     private String priceRange;
     private String category;
     private Integer page;
+    private String cursor;
+
+    SearchCursor getSearchCursorOrNull() {
+      return cursor == null || cursor.trim().isEmpty() ? null : SearchCursor.decode(cursor);
+    }
+
+    QueryTier getQueryTierOrNull() {
+      SearchCursor searchCursor = getSearchCursorOrNull();
+
+      return searchCursor == null ? null : searchCursor.getQueryTier();
+    }
 
     int getPageOrDefault() {
-      return page == null ? 1 : page;
+      SearchCursor searchCursor = getSearchCursorOrNull();
+
+      if (searchCursor != null) {
+        return searchCursor.getPage();
+      }
+
+      if (page == null) {
+        return 1;
+      }
+      if (page < 1 || page > MAX_PAGE_WITHOUT_CURSOR) {
+        throw new InvalidPageException(page);
+      }
+
+      return page;
     }
 
     int getFrom() {
@@ -287,10 +286,6 @@ public class ProductSearchController {
       return getPageOrDefault() > 1;
     }
 
-    int getPreviousPage() {
-      return getPageOrDefault() - 1;
-    }
-
     String getPageInfo(long totalHits) {
       int from = (getPageOrDefault() - 1) * RESULT_PAGE_SIZE + 1;
       long to = min(getPageOrDefault() * RESULT_PAGE_SIZE, totalHits);
@@ -302,24 +297,57 @@ public class ProductSearchController {
       return getPageOrDefault() * RESULT_PAGE_SIZE < totalHits;
     }
 
-    int getNextPage() {
-      return getPageOrDefault() + 1;
+    /**
+     * Returns an equivalent request whose query and filters are in canonical form, which makes it usable as a cache
+     * key.
+     */
+    ProductSearchRequest normalize() {
+      ProductSearchRequest normalized = new ProductSearchRequest();
+
+      normalized.setQuery(normalizeQuery(query));
+      normalized.setStatus(serializeIfPresent(JsonCodec.readStatus(status)));
+      normalized.setPriceRange(serializeIfPresent(JsonCodec.readPriceRange(priceRange)));
+      normalized.setCategory(serializeIfPresent(JsonCodec.readCategory(category)));
+      if (getSearchCursorOrNull() == null) {
+        normalized.setPage(getPageOrDefault());
+      } else {
+        normalized.setCursor(cursor.trim());
+      }
+
+      return normalized;
+    }
+
+    private static String serializeIfPresent(SerializableValue value) {
+      return value == null ? null : value.serialize();
     }
 
   }
 
+  /**
+   * The exact tier requires all tokens to match as they are, which is cheap. The fuzzy tier also matches misspelled
+   * tokens and is only used when the exact tier finds too few products.
+   */
+  public enum QueryTier {
+
+    EXACT,
+    FUZZY
+
+  }
+
   @Value
   static class Status extends SerializableValue {
 
     private String name;
+    @JsonIgnore
+    private long count;
 
     static Status of(Terms.Bucket bucket) {
-      return new Status(bucket.getKeyAsString());
+      return new Status(bucket.getKeyAsString(), bucket.getDocCount());
     }
 
     @JsonCreator
     static Status of(@JsonProperty("name") String name) {
-      return new Status(name);
+      return new Status(name, 0);
     }
 
   }
@@ -329,10 +357,15 @@ public class ProductSearchController {
 
     private double from;
     private double to;
+    @JsonIgnore
+    private long count;
 
     static PriceRange of(Range.Bucket bucket) {
       try {
-        return new PriceRange(parseDouble(bucket.getFromAsString()), parseDouble(bucket.getToAsString()));
+        double from = parseDouble(bucket.getFromAsString());
+        double to = parseDouble(bucket.getToAsString());
+
+        return new PriceRange(from, to, bucket.getDocCount());
       } catch (NumberFormatException e) {
         throw new ProductSearchException(e);
       }
@@ -340,7 +373,7 @@ public class ProductSearchController {
 
     @JsonCreator
     static PriceRange of(@JsonProperty("from") double from, @JsonProperty("to") double to) {
-      return new PriceRange(from, to);
+      return new PriceRange(from, to, 0);
     }
 
   }
@@ -349,14 +382,16 @@ public class ProductSearchController {
   static class Category extends SerializableValue {
 
     private String name;
+    @JsonIgnore
+    private long count;
 
     static Category of(Terms.Bucket bucket) {
-      return new Category(bucket.getKeyAsString());
+      return new Category(bucket.getKeyAsString(), bucket.getDocCount());
     }
 
     @JsonCreator
     static Category of(@JsonProperty("name") String name) {
-      return new Category(name);
+      return new Category(name, 0);
     }
 
   }
@@ -367,11 +402,7 @@ public class ProductSearchController {
 
     public String serialize() {
       if (serialized == null) {
-        try {
-          serialized = new ObjectMapper().writeValueAsString(this);
-        } catch (JsonProcessingException e) {
-          throw new ProductSearchException(e);
-        }
+        serialized = JsonCodec.write(this);
       }
 
       return serialized;
@@ -387,4 +418,26 @@ public class ProductSearchController {
 
   }
 
+  /**
+   * Deep pages are only served through cursors, because Elasticsearch has to collect and sort all preceding hits on
+   * every shard to skip them with from.
+   */
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  private static class InvalidPageException extends RuntimeException {
+
+    InvalidPageException(int page) {
+      super("Page " + page + " is not between 1 and " + MAX_PAGE_WITHOUT_CURSOR + ", follow the cursors instead.");
+    }
+
+  }
+
+  @ResponseStatus(HttpStatus.NOT_FOUND)
+  private static class ProductNotFoundException extends RuntimeException {
+
+    ProductNotFoundException(String id) {
+      super("There is no product with id " + id + ".");
+    }
+
+  }
+
 }
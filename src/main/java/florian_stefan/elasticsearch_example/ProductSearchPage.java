@@ -0,0 +1,86 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.Value;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
+
+/**
+ * The decoded result of a search request, which holds everything needed for rendering a page of the result list, so
+ * that it can be cached without keeping the much larger search response around.
+ */
+@Value
+public class ProductSearchPage {
+
+  private String pageInfo;
+  private String previousCursor;
+  private String nextCursor;
+  private List<ProductListItem> searchResults;
+  private Facets facets;
+
+  static ProductSearchPage of(ProductSearchRequest searchRequest, QueryTier queryTier, SearchResponse searchResponse) {
+    long totalHits = searchResponse.getHits().getTotalHits();
+    List<SearchHit> searchHits = extractSearchHits(searchRequest, searchResponse);
+    int page = searchRequest.getPageOrDefault();
+    String previousCursor = null;
+    String nextCursor = null;
+
+    if (searchRequest.hasPreviousPage() && !searchHits.isEmpty()) {
+      previousCursor = SearchCursor.before(page - 1, searchHits.get(0), queryTier).encode();
+    }
+    if (searchRequest.hasNextPage(totalHits) && !searchHits.isEmpty()) {
+      nextCursor = SearchCursor.after(page + 1, searchHits.get(searchHits.size() - 1), queryTier).encode();
+    }
+
+    return new ProductSearchPage(
+        searchRequest.getPageInfo(totalHits),
+        previousCursor,
+        nextCursor,
+        searchHits.stream().map(ProductSearchPage::parseProductListItem).collect(toList()),
+        Facets.extract(searchResponse));
+  }
+
+  int estimateSizeInBytes() {
+    int size = 128 + 2 * (length(pageInfo) + length(previousCursor) + length(nextCursor));
+
+    size += searchResults.stream().mapToInt(ProductListItem::estimateSizeInBytes).sum();
+    size += 64 * (facets.getStatuses().size() + facets.getPriceRanges().size() + facets.getCategories().size());
+
+    return size;
+  }
+
+  private static List<SearchHit> extractSearchHits(ProductSearchRequest searchRequest, SearchResponse searchResponse) {
+    List<SearchHit> searchHits = new ArrayList<>(asList(searchResponse.getHits().getHits()));
+    SearchCursor cursor = searchRequest.getSearchCursorOrNull();
+
+    if (cursor != null && cursor.isReverse()) {
+      Collections.reverse(searchHits);
+    }
+
+    return searchHits;
+  }
+
+  private static ProductListItem parseProductListItem(SearchHit searchHit) {
+    ProductListItem productListItem = JsonCodec.readProductListItem(searchHit.getSourceRef()).setId(searchHit.getId());
+    HighlightField shortDescription = searchHit.getHighlightFields().get(ProductListItem.SHORT_DESCRIPTION_FIELD);
+
+    if (shortDescription != null && shortDescription.fragments().length > 0) {
+      productListItem.setShortDescription(shortDescription.fragments()[0].string());
+    }
+
+    return productListItem;
+  }
+
+  private static int length(String value) {
+    return value == null ? 0 : value.length();
+  }
+
+}
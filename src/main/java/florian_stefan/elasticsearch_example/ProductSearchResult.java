@@ -1,6 +1,7 @@
 package florian_stefan.elasticsearch_example;
 
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.util.List;
@@ -26,11 +27,42 @@ public class ProductSearchResult {
   }
 
   public String getCategories() {
-    return categories.stream().map(Category::getName).distinct().collect(joining(", "));
+    return String.join(", ", getCategoryNames());
   }
 
   public String getTags() {
-    return tags.stream().map(String::toUpperCase).distinct().collect(joining(", "));
+    return getTagNames().stream().map(String::toUpperCase).distinct().collect(joining(", "));
+  }
+
+  List<String> getCategoryNames() {
+    return getCategoryNames(categories);
+  }
+
+  List<String> getTagNames() {
+    return tags == null ? List.of() : tags.stream().distinct().collect(toList());
+  }
+
+  int estimateSizeInBytes() {
+    int size = 64 + 2 * (length(id) + length(name) + length(description) + length(status));
+
+    size += estimateSizeInBytes(categories);
+    if (tags != null) {
+      size += tags.stream().mapToInt(tag -> 32 + 2 * length(tag)).sum();
+    }
+
+    return size;
+  }
+
+  static List<String> getCategoryNames(List<Category> categories) {
+    return categories == null ? List.of() : categories.stream().map(Category::getName).distinct().collect(toList());
+  }
+
+  static int estimateSizeInBytes(List<Category> categories) {
+    return categories == null ? 0 : categories.stream().mapToInt(category -> 32 + 2 * length(category.getName())).sum();
+  }
+
+  static int length(String value) {
+    return value == null ? 0 : value.length();
   }
 
   @Data
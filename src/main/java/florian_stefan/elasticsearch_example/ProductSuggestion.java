@@ -0,0 +1,11 @@
+package florian_stefan.elasticsearch_example;
+
+import lombok.Value;
+
+@Value
+public class ProductSuggestion {
+
+  private String id;
+  private String name;
+
+}
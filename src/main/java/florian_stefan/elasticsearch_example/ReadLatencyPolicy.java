@@ -0,0 +1,118 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides how long a read may take in total and after which delay a duplicate is sent. The latency budget of an
+ * operation is configured with search.latency-budget-millis.{operation}, falling back to the default budget. The hedge
+ * delay follows a percentile of the recent latencies of the operation, so that only the slowest requests are sent
+ * twice.
+ */
+@Component
+public class ReadLatencyPolicy {
+
+  private final Environment environment;
+  private final long defaultBudgetMillis;
+  private final boolean hedgingEnabled;
+  private final double hedgingPercentile;
+  private final long hedgingMinDelayNanos;
+  private final long hedgingMinSamples;
+  private final long hedgingWindowNanos;
+  private final ConcurrentMap<String, Long> budgetsMillis = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, HedgeDelay> hedgeDelays = new ConcurrentHashMap<>();
+
+  public ReadLatencyPolicy(Environment environment,
+      @Value("${search.latency-budget-millis.default:2000}") long defaultBudgetMillis,
+      @Value("${search.hedging.enabled:true}") boolean hedgingEnabled,
+      @Value("${search.hedging.percentile:95}") double hedgingPercentile,
+      @Value("${search.hedging.min-delay-millis:5}") long hedgingMinDelayMillis,
+      @Value("${search.hedging.min-samples:100}") long hedgingMinSamples,
+      @Value("${search.hedging.window-seconds:10}") long hedgingWindowSeconds) {
+    this.environment = environment;
+    this.defaultBudgetMillis = defaultBudgetMillis;
+    this.hedgingEnabled = hedgingEnabled;
+    this.hedgingPercentile = hedgingPercentile;
+    this.hedgingMinDelayNanos = hedgingMinDelayMillis * 1_000_000;
+    this.hedgingMinSamples = hedgingMinSamples;
+    this.hedgingWindowNanos = SECONDS.toNanos(hedgingWindowSeconds);
+  }
+
+  public long getBudgetMillis(String operation) {
+    return budgetsMillis.computeIfAbsent(operation, key -> environment
+        .getProperty("search.latency-budget-millis." + key, Long.class, defaultBudgetMillis));
+  }
+
+  /**
+   * Returns the delay after which a duplicate of a request should be sent, or -1 if there are not enough samples yet.
+   */
+  public long getHedgeDelayMillis(String operation) {
+    if (!hedgingEnabled) {
+      return -1;
+    }
+
+    long delayNanos = getHedgeDelay(operation).getDelayNanos();
+
+    return delayNanos < 0 ? -1 : NANOSECONDS.toMillis(delayNanos);
+  }
+
+  public void recordLatency(String operation, long latencyNanos) {
+    if (hedgingEnabled) {
+      getHedgeDelay(operation).record(latencyNanos);
+    }
+  }
+
+  private HedgeDelay getHedgeDelay(String operation) {
+    return hedgeDelays.computeIfAbsent(operation, key -> new HedgeDelay());
+  }
+
+  /**
+   * Collects the latencies of one operation and recomputes the delay once per window, as long as the window saw enough
+   * samples. Windows with too few samples are added to the next one.
+   */
+  private class HedgeDelay {
+
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram samples = new Histogram(3);
+
+    private volatile long delayNanos = -1;
+    private volatile long nextUpdateNanos = System.nanoTime() + hedgingWindowNanos;
+
+    void record(long latencyNanos) {
+      recorder.recordValue(latencyNanos);
+    }
+
+    long getDelayNanos() {
+      if (System.nanoTime() >= nextUpdateNanos) {
+        update();
+      }
+
+      return delayNanos;
+    }
+
+    private synchronized void update() {
+      if (System.nanoTime() < nextUpdateNanos) {
+        return;
+      }
+
+      samples.add(recorder.getIntervalHistogram());
+
+      if (samples.getTotalCount() >= hedgingMinSamples) {
+        delayNanos = Math.max(samples.getValueAtPercentile(hedgingPercentile), hedgingMinDelayNanos);
+        samples.reset();
+      }
+
+      nextUpdateNanos = System.nanoTime() + hedgingWindowNanos;
+    }
+
+  }
+
+}
@@ -0,0 +1,28 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.HttpStatus.CONFLICT;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Triggers a reindex over HTTP. The endpoint is not authenticated, so it only exists if
+ * indexing.reindex-endpoint.enabled is set to true.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "indexing.reindex-endpoint.enabled", havingValue = "true")
+public class ReindexController {
+
+  private final IndexRequestExecutor indexRequestExecutor;
+
+  @PostMapping("/reindex")
+  public ResponseEntity<Void> reindex() {
+    return ResponseEntity.status(indexRequestExecutor.reindexProducts() ? ACCEPTED : CONFLICT).build();
+  }
+
+}
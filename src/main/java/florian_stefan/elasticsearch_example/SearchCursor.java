@@ -0,0 +1,63 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.util.Base64;
+import java.util.List;
+import lombok.Value;
+import org.elasticsearch.search.SearchHit;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Value
+public class SearchCursor {
+
+  private int page;
+  private boolean reverse;
+  private List<Object> sortValues;
+  private QueryTier queryTier;
+
+  static SearchCursor after(int page, SearchHit searchHit, QueryTier queryTier) {
+    return new SearchCursor(page, false, asList(searchHit.getSortValues()), queryTier);
+  }
+
+  static SearchCursor before(int page, SearchHit searchHit, QueryTier queryTier) {
+    return new SearchCursor(page, true, asList(searchHit.getSortValues()), queryTier);
+  }
+
+  /**
+   * Creates a cursor from its serialized form. Cursors issued before query tiers were introduced have no tier, which
+   * lets the tier be chosen again.
+   */
+  @JsonCreator
+  static SearchCursor of(@JsonProperty("page") int page, @JsonProperty("reverse") boolean reverse,
+      @JsonProperty("sortValues") List<Object> sortValues, @JsonProperty("queryTier") QueryTier queryTier) {
+    return new SearchCursor(page, reverse, sortValues, queryTier);
+  }
+
+  static SearchCursor decode(String token) {
+    try {
+      return JsonCodec.readSearchCursor(Base64.getUrlDecoder().decode(token));
+    } catch (RuntimeException e) {
+      throw new InvalidSearchCursorException(e);
+    }
+  }
+
+  String encode() {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(JsonCodec.write(this).getBytes(UTF_8));
+  }
+
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  private static class InvalidSearchCursorException extends RuntimeException {
+
+    InvalidSearchCursorException(Throwable cause) {
+      super("The search cursor is invalid.", cause);
+    }
+
+  }
+
+}
@@ -0,0 +1,310 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Component
+public class SearchRequestExecutor implements DisposableBean {
+
+  private final RestHighLevelClient restHighLevelClient;
+  private final ElasticsearchMetrics elasticsearchMetrics;
+  private final ReadLatencyPolicy readLatencyPolicy;
+  private final CircuitBreaker circuitBreaker;
+  private final ScheduledExecutorService scheduler;
+  private final Semaphore inFlightRequests;
+  private final BlockingQueue<Runnable> queuedRequests;
+  private final ConcurrentMap<String, CompletableFuture<?>> pendingResponses = new ConcurrentHashMap<>();
+
+  @Autowired
+  public SearchRequestExecutor(RestHighLevelClient restHighLevelClient, ElasticsearchMetrics elasticsearchMetrics,
+      ReadLatencyPolicy readLatencyPolicy, CircuitBreaker circuitBreaker,
+      @Value("${search.max-concurrent-requests:64}") int maxConcurrentRequests,
+      @Value("${search.max-queued-requests:512}") int maxQueuedRequests) {
+    this(restHighLevelClient, elasticsearchMetrics, readLatencyPolicy, circuitBreaker,
+        newSingleThreadScheduledExecutor(SearchRequestExecutor::newSchedulerThread), maxConcurrentRequests,
+        maxQueuedRequests);
+  }
+
+  /**
+   * Creates an executor that schedules its hedges and timeouts on the given scheduler and shuts it down when it is
+   * destroyed.
+   */
+  SearchRequestExecutor(RestHighLevelClient restHighLevelClient, ElasticsearchMetrics elasticsearchMetrics,
+      ReadLatencyPolicy readLatencyPolicy, CircuitBreaker circuitBreaker, ScheduledExecutorService scheduler,
+      int maxConcurrentRequests, int maxQueuedRequests) {
+    this.restHighLevelClient = restHighLevelClient;
+    this.elasticsearchMetrics = elasticsearchMetrics;
+    this.readLatencyPolicy = readLatencyPolicy;
+    this.circuitBreaker = circuitBreaker;
+    this.scheduler = scheduler;
+    this.inFlightRequests = new Semaphore(maxConcurrentRequests);
+    this.queuedRequests = new LinkedBlockingQueue<>(maxQueuedRequests);
+  }
+
+  public CompletableFuture<SearchResponse> search(String operation, SearchRequest searchRequest) {
+    return coalesce(operation, searchRequest.toString(), () -> this.<SearchResponse>execute(operation,
+        listener -> restHighLevelClient.searchAsync(searchRequest, listener))
+        .thenApply(searchResponse -> elasticsearchMetrics.recordSearch(operation, searchResponse)));
+  }
+
+  public CompletableFuture<GetResponse> get(GetRequest getRequest) {
+    return coalesce("get", getKey(getRequest),
+        () -> execute("get", listener -> restHighLevelClient.getAsync(getRequest, listener)));
+  }
+
+  public CompletableFuture<MultiGetResponse> multiGet(MultiGetRequest multiGetRequest) {
+    return execute("multi_get", listener -> restHighLevelClient.multiGetAsync(multiGetRequest, listener));
+  }
+
+  /**
+   * Identifies a get by everything that affects its response. GetRequest only describes index, type and id in its
+   * string form, and FetchSourceContext has none at all.
+   */
+  static String getKey(GetRequest getRequest) {
+    FetchSourceContext fetchSourceContext = getRequest.fetchSourceContext();
+    String source = fetchSourceContext == null ? "default" : fetchSourceContext.fetchSource()
+        + " includes " + Arrays.toString(fetchSourceContext.includes())
+        + " excludes " + Arrays.toString(fetchSourceContext.excludes());
+
+    return getRequest.index() + "/" + getRequest.type() + "/" + getRequest.id()
+        + " routing [" + getRequest.routing() + "]"
+        + " preference [" + getRequest.preference() + "]"
+        + " realtime [" + getRequest.realtime() + "]"
+        + " stored_fields " + Arrays.toString(getRequest.storedFields())
+        + " source [" + source + "]";
+  }
+
+  /**
+   * Lets concurrent identical requests share the response of the one that is already waiting for Elasticsearch, which
+   * keeps bursts of the same request from piling up in the queue. Each caller gets its own copy of the shared future.
+   * A request that fails before it is sent fails the callers that joined it as well and is not shared any longer.
+   */
+  @SuppressWarnings("unchecked")
+  <T> CompletableFuture<T> coalesce(String operation, String key, Supplier<CompletableFuture<T>> request) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    CompletableFuture<T> pendingResponse = (CompletableFuture<T>) pendingResponses.putIfAbsent(key, future);
+
+    if (pendingResponse != null) {
+      elasticsearchMetrics.recordCoalesced(operation);
+
+      return pendingResponse.copy();
+    }
+
+    CompletableFuture<T> response;
+
+    try {
+      response = request.get();
+    } catch (RuntimeException e) {
+      pendingResponses.remove(key, future);
+      future.completeExceptionally(e);
+
+      return future.copy();
+    }
+
+    response.whenComplete((result, e) -> {
+      pendingResponses.remove(key, future);
+
+      if (e == null) {
+        future.complete(result);
+      } else {
+        future.completeExceptionally(e);
+      }
+    });
+
+    return future.copy();
+  }
+
+  /**
+   * Sends a request and, if it has not been answered after the hedge delay of the operation, a duplicate that the
+   * round-robin of the client sends to the next node. The first response wins. The request fails once all attempts
+   * failed or the latency budget of the operation is exhausted, and fails fast while the circuit breaker is open.
+   */
+  <T> CompletableFuture<T> execute(String operation, Consumer<ActionListener<T>> action) {
+    if (!circuitBreaker.tryAcquirePermission()) {
+      elasticsearchMetrics.recordShortCircuited(operation);
+
+      return CompletableFuture.failedFuture(new ClusterUnavailableException());
+    }
+
+    CompletableFuture<T> response = new CompletableFuture<>();
+    AtomicInteger pendingAttempts = new AtomicInteger(1);
+    long budgetMillis = readLatencyPolicy.getBudgetMillis(operation);
+    long hedgeDelayMillis = readLatencyPolicy.getHedgeDelayMillis(operation);
+    ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+      if (response.completeExceptionally(new SearchTimeoutException(budgetMillis))) {
+        elasticsearchMetrics.recordTimeout(operation);
+      }
+    }, budgetMillis, MILLISECONDS);
+    ScheduledFuture<?> hedge = hedgeDelayMillis < 0 || hedgeDelayMillis >= budgetMillis ? null : scheduler.schedule(
+        () -> hedge(operation, action, response, pendingAttempts), hedgeDelayMillis, MILLISECONDS);
+
+    response.whenComplete((ignored, e) -> {
+      timeout.cancel(false);
+      if (hedge != null) {
+        hedge.cancel(false);
+      }
+      recordOutcome(e);
+    });
+
+    send(operation, action, response, pendingAttempts);
+
+    return response;
+  }
+
+  private <T> void hedge(String operation, Consumer<ActionListener<T>> action, CompletableFuture<T> response,
+      AtomicInteger pendingAttempts) {
+    // Duplicates would only add to the load while requests are already waiting for a free slot.
+    if (response.isDone() || !queuedRequests.isEmpty()) {
+      return;
+    }
+
+    pendingAttempts.incrementAndGet();
+    elasticsearchMetrics.recordHedged(operation);
+    send(operation, action, response, pendingAttempts);
+  }
+
+  private <T> void send(String operation, Consumer<ActionListener<T>> action, CompletableFuture<T> response,
+      AtomicInteger pendingAttempts) {
+    Runnable request = () -> {
+      if (response.isDone()) {
+        complete(() -> {});
+        return;
+      }
+
+      Timer.Sample sample = elasticsearchMetrics.startRoundTrip();
+      long startNanos = System.nanoTime();
+
+      try {
+        action.accept(ActionListener.wrap(
+            result -> complete(() -> {
+              elasticsearchMetrics.recordRoundTrip(sample, operation, null);
+              readLatencyPolicy.recordLatency(operation, System.nanoTime() - startNanos);
+              response.complete(result);
+            }),
+            e -> complete(() -> {
+              elasticsearchMetrics.recordRoundTrip(sample, operation, e);
+              failAttempt(response, pendingAttempts, e);
+            })));
+      } catch (RuntimeException e) {
+        complete(() -> failAttempt(response, pendingAttempts, e));
+      }
+    };
+
+    if (queuedRequests.offer(request)) {
+      drainQueuedRequests();
+    } else {
+      failAttempt(response, pendingAttempts, new SearchRejectedException());
+    }
+  }
+
+  private static void failAttempt(CompletableFuture<?> response, AtomicInteger pendingAttempts, Exception e) {
+    if (pendingAttempts.decrementAndGet() == 0) {
+      response.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Counts timeouts, connection failures and server errors against the circuit breaker. Rejections and errors caused
+   * by the request itself say nothing about the health of the cluster.
+   */
+  private void recordOutcome(Throwable failure) {
+    if (failure == null) {
+      circuitBreaker.onSuccess();
+    } else if (failure instanceof SearchRejectedException) {
+      circuitBreaker.onIgnored();
+    } else if (failure instanceof ElasticsearchStatusException
+        && ((ElasticsearchStatusException) failure).status().getStatus() < 500) {
+      circuitBreaker.onIgnored();
+    } else {
+      circuitBreaker.onFailure();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    scheduler.shutdownNow();
+  }
+
+  private void complete(Runnable completion) {
+    inFlightRequests.release();
+    drainQueuedRequests();
+    completion.run();
+  }
+
+  private void drainQueuedRequests() {
+    while (!queuedRequests.isEmpty() && inFlightRequests.tryAcquire()) {
+      Runnable request = queuedRequests.poll();
+
+      if (request == null) {
+        inFlightRequests.release();
+      } else {
+        request.run();
+      }
+    }
+  }
+
+  private static Thread newSchedulerThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "search-timeouts");
+    thread.setDaemon(true);
+
+    return thread;
+  }
+
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  private static class SearchRejectedException extends RuntimeException {
+
+    SearchRejectedException() {
+      super("Too many search requests are waiting for Elasticsearch.");
+    }
+
+  }
+
+  @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+  private static class SearchTimeoutException extends RuntimeException {
+
+    SearchTimeoutException(long budgetMillis) {
+      super("Elasticsearch did not respond within " + budgetMillis + " ms.");
+    }
+
+  }
+
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  private static class ClusterUnavailableException extends RuntimeException {
+
+    ClusterUnavailableException() {
+      super("Elasticsearch is unavailable, requests are rejected until it recovers.");
+    }
+
+  }
+
+}
@@ -0,0 +1,106 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches decoded result pages keyed by the normalized search request, so that repeated queries that only differ in the
+ * case or order of their tokens or in the formatting of their filters are answered without asking Elasticsearch.
+ * Uncached pages are searched with the exact query tier first and only searched again with the fuzzy tier if that
+ * finds too few products. The cursors of a page keep the tier, so that the following pages skip the exact search.
+ */
+@Component
+public class SearchResultCache {
+
+  private final SearchRequestExecutor searchRequestExecutor;
+  private final IndexRequestParser indexRequestParser;
+  private final ElasticsearchMetrics elasticsearchMetrics;
+  private final AsyncLoadingCache<ProductSearchRequest, ProductSearchPage> pagesByRequest;
+
+  @Value("${search.tiered.enabled:true}")
+  private boolean tieredEnabled;
+
+  @Value("${search.tiered.min-exact-hits:3}")
+  private long minExactHits;
+
+  public SearchResultCache(SearchRequestExecutor searchRequestExecutor, IndexRequestParser indexRequestParser,
+      ElasticsearchMetrics elasticsearchMetrics, MeterRegistry meterRegistry,
+      @Value("${search.cache.maximum-weight-in-bytes:33554432}") long maximumWeightInBytes,
+      @Value("${search.cache.expire-after-write-seconds:60}") long expireAfterWriteSeconds) {
+    this.searchRequestExecutor = searchRequestExecutor;
+    this.indexRequestParser = indexRequestParser;
+    this.elasticsearchMetrics = elasticsearchMetrics;
+    this.pagesByRequest = Caffeine.newBuilder()
+        .maximumWeight(maximumWeightInBytes)
+        .weigher((ProductSearchRequest searchRequest, ProductSearchPage page) -> page.estimateSizeInBytes())
+        .expireAfterWrite(expireAfterWriteSeconds, SECONDS)
+        .recordStats()
+        .buildAsync(this::loadSearchPage);
+
+    CaffeineCacheMetrics.monitor(meterRegistry, pagesByRequest.synchronous(), "searches");
+  }
+
+  public CompletableFuture<ProductSearchPage> getSearchPage(ProductSearchRequest searchRequest) {
+    return pagesByRequest.get(searchRequest.normalize());
+  }
+
+  @EventListener
+  public void onIndexChanged(IndexChangedEvent event) {
+    pagesByRequest.synchronous().invalidateAll();
+  }
+
+  private CompletableFuture<ProductSearchPage> loadSearchPage(ProductSearchRequest searchRequest, Executor executor) {
+    QueryTier queryTier = searchRequest.getQueryTierOrNull();
+
+    if (queryTier != null) {
+      return searchProducts(searchRequest, queryTier);
+    }
+    if (!tieredEnabled) {
+      return searchProducts(searchRequest, QueryTier.FUZZY);
+    }
+
+    return search(searchRequest, QueryTier.EXACT).thenCompose(searchResponse -> {
+      if (searchResponse.getHits().getTotalHits() >= minExactHits) {
+        return completedFuture(toSearchPage(searchRequest, QueryTier.EXACT, searchResponse));
+      }
+
+      return searchProducts(searchRequest, QueryTier.FUZZY);
+    });
+  }
+
+  private CompletableFuture<ProductSearchPage> searchProducts(ProductSearchRequest searchRequest, QueryTier queryTier) {
+    return search(searchRequest, queryTier)
+        .thenApply(searchResponse -> toSearchPage(searchRequest, queryTier, searchResponse));
+  }
+
+  private CompletableFuture<SearchResponse> search(ProductSearchRequest searchRequest, QueryTier queryTier) {
+    SearchSourceBuilder source = ProductSearchController.getSearchSource(searchRequest, queryTier);
+    String operation = "search_" + queryTier.name().toLowerCase(Locale.ROOT);
+
+    return searchRequestExecutor.search(operation, new SearchRequest(indexRequestParser.getAlias()).source(source));
+  }
+
+  private ProductSearchPage toSearchPage(ProductSearchRequest searchRequest, QueryTier queryTier,
+      SearchResponse searchResponse) {
+    elasticsearchMetrics.recordQueryTier(queryTier);
+
+    return ProductSearchPage.of(searchRequest, queryTier, searchResponse);
+  }
+
+}
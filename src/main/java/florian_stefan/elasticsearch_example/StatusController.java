@@ -0,0 +1,35 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+public class StatusController {
+
+  private final IndexStatus indexStatus;
+  private final ProductCache productCache;
+
+  @GetMapping("/status")
+  public ResponseEntity<Map<String, Object>> getStatus() {
+    CacheStats productCacheStats = productCache.getStats();
+    Map<String, Object> status = Map.of(
+        "state", indexStatus.getState(),
+        "indexedDocuments", indexStatus.getIndexedDocuments(),
+        "productCache", Map.of(
+            "hitRatio", productCacheStats.hitRate(),
+            "hits", productCacheStats.hitCount(),
+            "misses", productCacheStats.missCount(),
+            "evictions", productCacheStats.evictionCount()));
+
+    return ResponseEntity.status(indexStatus.isReady() ? OK : SERVICE_UNAVAILABLE).body(status);
+  }
+
+}
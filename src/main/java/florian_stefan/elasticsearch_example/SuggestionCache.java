@@ -0,0 +1,136 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilders;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the completion suggestions per normalized prefix, since type-ahead requests repeat the same short prefixes
+ * over and over again. Suggestions that cannot be loaded within the timeout are answered from the cached suggestions of
+ * a shorter prefix instead, while the cache keeps loading them for the next keystroke.
+ */
+@Component
+public class SuggestionCache {
+
+  private static final String FIELD = "name.suggest";
+  private static final String SUGGESTION = "names";
+
+  private final SearchRequestExecutor searchRequestExecutor;
+  private final IndexRequestParser indexRequestParser;
+  private final AsyncLoadingCache<String, List<ProductSuggestion>> suggestionsByPrefix;
+  private final int size;
+  private final long timeoutMillis;
+
+  public SuggestionCache(SearchRequestExecutor searchRequestExecutor, IndexRequestParser indexRequestParser,
+      MeterRegistry meterRegistry,
+      @Value("${suggest.size:8}") int size,
+      @Value("${suggest.timeout-millis:10}") long timeoutMillis,
+      @Value("${suggest.cache.maximum-size:10000}") long maximumSize,
+      @Value("${suggest.cache.expire-after-write-seconds:300}") long expireAfterWriteSeconds) {
+    this.searchRequestExecutor = searchRequestExecutor;
+    this.indexRequestParser = indexRequestParser;
+    this.size = size;
+    this.timeoutMillis = timeoutMillis;
+    this.suggestionsByPrefix = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWriteSeconds, SECONDS)
+        .recordStats()
+        .buildAsync(this::loadSuggestions);
+
+    CaffeineCacheMetrics.monitor(meterRegistry, suggestionsByPrefix.synchronous(), "suggestions");
+  }
+
+  public CompletableFuture<List<ProductSuggestion>> getSuggestions(String prefix) {
+    String normalizedPrefix = normalize(prefix);
+
+    if (normalizedPrefix.isEmpty()) {
+      return CompletableFuture.completedFuture(List.of());
+    }
+
+    CompletableFuture<List<ProductSuggestion>> suggestions = suggestionsByPrefix.get(normalizedPrefix).copy();
+
+    if (suggestions.isDone()) {
+      return suggestions;
+    }
+
+    return suggestions
+        .orTimeout(timeoutMillis, MILLISECONDS)
+        .exceptionally(e -> {
+          if (e instanceof TimeoutException) {
+            return getSuggestionsOfShorterPrefix(normalizedPrefix);
+          }
+
+          throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+        });
+  }
+
+  @EventListener
+  public void onIndexChanged(IndexChangedEvent event) {
+    suggestionsByPrefix.synchronous().invalidateAll();
+  }
+
+  private CompletableFuture<List<ProductSuggestion>> loadSuggestions(String prefix, Executor executor) {
+    SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+        .fetchSource(false)
+        .suggest(new SuggestBuilder().addSuggestion(SUGGESTION, SuggestBuilders.completionSuggestion(FIELD)
+            .prefix(prefix)
+            .skipDuplicates(true)
+            .size(size)));
+
+    SearchRequest searchRequest = new SearchRequest(indexRequestParser.getAlias()).source(sourceBuilder);
+
+    return searchRequestExecutor.search("suggest", searchRequest)
+        .thenApply(SuggestionCache::extractSuggestions);
+  }
+
+  /**
+   * Looks the shorter prefixes up through the map view, which only returns suggestions that have been loaded
+   * successfully and does not count towards the hit and miss statistics of the cache.
+   */
+  private List<ProductSuggestion> getSuggestionsOfShorterPrefix(String prefix) {
+    for (int length = prefix.length() - 1; length > 0; length--) {
+      List<ProductSuggestion> suggestions = suggestionsByPrefix.synchronous().asMap().get(prefix.substring(0, length));
+
+      if (suggestions != null) {
+        return suggestions.stream()
+            .filter(suggestion -> normalize(suggestion.getName()).startsWith(prefix))
+            .collect(toList());
+      }
+    }
+
+    return List.of();
+  }
+
+  private static List<ProductSuggestion> extractSuggestions(SearchResponse searchResponse) {
+    CompletionSuggestion suggestion = searchResponse.getSuggest().getSuggestion(SUGGESTION);
+
+    return suggestion.getOptions().stream()
+        .map(option -> new ProductSuggestion(option.getHit().getId(), option.getText().string()))
+        .collect(toList());
+  }
+
+  private static String normalize(String prefix) {
+    return prefix == null ? "" : prefix.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+}
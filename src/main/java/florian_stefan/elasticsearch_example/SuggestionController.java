@@ -0,0 +1,24 @@
+package florian_stefan.elasticsearch_example;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+public class SuggestionController {
+
+  private final IndexStatus indexStatus;
+  private final SuggestionCache suggestionCache;
+
+  @GetMapping("/suggest")
+  public CompletableFuture<List<ProductSuggestion>> getSuggestions(@RequestParam(defaultValue = "") String prefix) {
+    indexStatus.requireReady();
+
+    return suggestionCache.getSuggestions(prefix);
+  }
+
+}
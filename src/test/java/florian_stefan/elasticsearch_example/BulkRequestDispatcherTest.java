@@ -0,0 +1,263 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse.Failure;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class BulkRequestDispatcherTest {
+
+  /**
+   * Fails tests that leak a permit, since the dispatch then waits for the request in flight forever.
+   */
+  @Rule
+  public final Timeout timeout = Timeout.seconds(10);
+
+  private final RestHighLevelClient restHighLevelClient = mock(RestHighLevelClient.class);
+  private final List<List<String>> sentIds = new CopyOnWriteArrayList<>();
+  private final Map<String, Queue<Exception>> itemFailures = new ConcurrentHashMap<>();
+
+  private BulkRequestDispatcher bulkRequestDispatcher;
+  private BiConsumer<BulkRequest, ActionListener<BulkResponse>> elasticsearch = this::respond;
+
+  @Before
+  public void setUp() {
+    bulkRequestDispatcher = new BulkRequestDispatcher(restHighLevelClient,
+        new ElasticsearchMetrics(new SimpleMeterRegistry()));
+    ReflectionTestUtils.setField(bulkRequestDispatcher, "concurrentRequests", 2);
+    ReflectionTestUtils.setField(bulkRequestDispatcher, "maxRetries", 3);
+    ReflectionTestUtils.setField(bulkRequestDispatcher, "initialBackoffMillis", 1L);
+
+    doAnswer(invocation -> {
+      BulkRequest bulkRequest = invocation.getArgument(0);
+      sentIds.add(ids(bulkRequest));
+      elasticsearch.accept(bulkRequest, invocation.getArgument(1));
+
+      return null;
+    }).when(restHighLevelClient).bulkAsync(any(BulkRequest.class), any());
+  }
+
+  @Test
+  public void indexesTheDocumentsOfAllBulkRequests() {
+    BulkStatistics statistics = dispatch(bulkRequest("1", "2", "3"), bulkRequest("4", "5"));
+
+    assertThat(sentIds).containsExactlyInAnyOrder(List.of("1", "2", "3"), List.of("4", "5"));
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(5);
+    assertThat(statistics.getFailedDocuments()).isEqualTo(0);
+  }
+
+  @Test
+  public void retriesOnlyTheRejectedItemsOfABulkRequest() {
+    givenItemFailures("2", rejected());
+
+    BulkStatistics statistics = dispatch(bulkRequest("1", "2", "3"));
+
+    assertThat(sentIds).containsExactly(List.of("1", "2", "3"), List.of("2"));
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(3);
+    assertThat(statistics.getFailedDocuments()).isEqualTo(0);
+  }
+
+  @Test
+  public void countsItemsThatFailedForOtherReasonsWithoutRetryingThem() {
+    givenItemFailures("2", new IllegalArgumentException("failed to parse field [price]"));
+
+    BulkStatistics statistics = dispatch(bulkRequest("1", "2", "3"));
+
+    assertThat(sentIds).containsExactly(List.of("1", "2", "3"));
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(2);
+    assertThat(statistics.getFailedDocuments()).isEqualTo(1);
+  }
+
+  @Test
+  public void countsItemsThatAreStillRejectedOnceTheRetriesAreExhausted() {
+    ReflectionTestUtils.setField(bulkRequestDispatcher, "maxRetries", 2);
+    givenItemFailures("2", rejected(), rejected(), rejected());
+
+    BulkStatistics statistics = dispatch(bulkRequest("1", "2", "3"));
+
+    assertThat(sentIds).containsExactly(List.of("1", "2", "3"), List.of("2"), List.of("2"));
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(2);
+    assertThat(statistics.getFailedDocuments()).isEqualTo(1);
+  }
+
+  @Test
+  public void retriesARejectedBulkRequestAsAWhole() {
+    Queue<Exception> requestFailures = new ConcurrentLinkedQueue<>(List.of(
+        new ElasticsearchStatusException("rejected", RestStatus.TOO_MANY_REQUESTS)));
+    elasticsearch = (bulkRequest, listener) -> {
+      Exception failure = requestFailures.poll();
+
+      if (failure == null) {
+        respond(bulkRequest, listener);
+      } else {
+        listener.onFailure(failure);
+      }
+    };
+
+    BulkStatistics statistics = dispatch(bulkRequest("1", "2", "3"));
+
+    assertThat(sentIds).containsExactly(List.of("1", "2", "3"), List.of("1", "2", "3"));
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(3);
+  }
+
+  @Test
+  public void countsAllDocumentsOfABulkRequestThatFailedForOtherReasons() {
+    elasticsearch = (bulkRequest, listener) -> listener.onFailure(new IOException("Connection reset"));
+
+    BulkStatistics statistics = dispatch(bulkRequest("1", "2", "3"), bulkRequest("4", "5"));
+
+    assertThat(sentIds).hasSize(2);
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(0);
+    assertThat(statistics.getFailedDocuments()).isEqualTo(5);
+  }
+
+  @Test
+  public void sendsNoMoreThanTheConfiguredNumberOfConcurrentRequests() throws Exception {
+    BlockingQueue<Runnable> responses = new LinkedBlockingQueue<>();
+    elasticsearch = (bulkRequest, listener) -> responses.add(() -> respond(bulkRequest, listener));
+
+    CompletableFuture<BulkStatistics> statistics = CompletableFuture.supplyAsync(() ->
+        dispatch(bulkRequest("1"), bulkRequest("2"), bulkRequest("3")));
+    Runnable first = responses.take();
+    Runnable second = responses.take();
+
+    assertThat(responses.poll(100, MILLISECONDS)).isNull();
+
+    first.run();
+    responses.take().run();
+    second.run();
+
+    assertThat(statistics.join().getIndexedDocuments()).isEqualTo(3);
+  }
+
+  @Test
+  public void releasesThePermitsOfRequestsThatFailedBeforeTheyWereSent() {
+    elasticsearch = (bulkRequest, listener) -> {
+      throw new IllegalStateException("Request cannot be executed; I/O reactor status: STOPPED");
+    };
+
+    BulkStatistics statistics = dispatch(bulkRequest("1", "2"), bulkRequest("3"), bulkRequest("4", "5"));
+
+    assertThat(sentIds).hasSize(3);
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(0);
+    assertThat(statistics.getFailedDocuments()).isEqualTo(5);
+  }
+
+  @Test
+  public void waitsForTheRequestsInFlightIfTheStreamOfBulkRequestsFails() throws Exception {
+    BlockingQueue<Runnable> responses = new LinkedBlockingQueue<>();
+    elasticsearch = (bulkRequest, listener) -> responses.add(() -> respond(bulkRequest, listener));
+    Stream<BulkRequest> bulkRequests = Stream.of("1", "2").map(id -> {
+      if (id.equals("2")) {
+        throw new IllegalStateException("Malformed bulk data");
+      }
+
+      return bulkRequest(id);
+    });
+
+    CompletableFuture<BulkStatistics> statistics = CompletableFuture.supplyAsync(() ->
+        bulkRequestDispatcher.dispatch(bulkRequests));
+    Runnable response = responses.take();
+
+    MILLISECONDS.sleep(100);
+    assertThat(statistics).isNotDone();
+
+    response.run();
+
+    assertThatThrownBy(statistics::join).hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void countsTheDocumentsOfAResponseOnceEvenIfTheProgressListenerFails() {
+    BulkStatistics statistics = bulkRequestDispatcher.dispatch(Stream.of(bulkRequest("1", "2", "3")), indexedItems -> {
+      throw new IllegalStateException("progress listener failed");
+    });
+
+    assertThat(sentIds).containsExactly(List.of("1", "2", "3"));
+    assertThat(statistics.getIndexedDocuments()).isEqualTo(3);
+    assertThat(statistics.getFailedDocuments()).isEqualTo(0);
+  }
+
+  private BulkStatistics dispatch(BulkRequest... bulkRequests) {
+    return bulkRequestDispatcher.dispatch(Stream.of(bulkRequests));
+  }
+
+  private void givenItemFailures(String id, Exception... failures) {
+    itemFailures.put(id, new ConcurrentLinkedQueue<>(List.of(failures)));
+  }
+
+  /**
+   * Answers every item with the next failure given for its document, or with success once there is none.
+   */
+  private void respond(BulkRequest bulkRequest, ActionListener<BulkResponse> listener) {
+    List<DocWriteRequest> requests = bulkRequest.requests();
+    BulkItemResponse[] itemResponses = new BulkItemResponse[requests.size()];
+
+    for (int i = 0; i < itemResponses.length; i++) {
+      String id = requests.get(i).id();
+      Exception failure = itemFailures.getOrDefault(id, new ConcurrentLinkedQueue<>()).poll();
+
+      itemResponses[i] = failure == null
+          ? new BulkItemResponse(i, OpType.INDEX, new IndexResponse(new ShardId("products", "_na_", 0), "_doc", id,
+              1, 1, 1, true))
+          : new BulkItemResponse(i, OpType.INDEX, new Failure("products", "_doc", id, failure));
+    }
+
+    listener.onResponse(new BulkResponse(itemResponses, 1));
+  }
+
+  private static BulkRequest bulkRequest(String... ids) {
+    BulkRequest bulkRequest = new BulkRequest();
+
+    Stream.of(ids).forEach(id -> bulkRequest.add(new IndexRequest("products", "_doc", id)
+        .source("{\"name\":\"Product " + id + "\"}", XContentType.JSON)));
+
+    return bulkRequest;
+  }
+
+  private static List<String> ids(BulkRequest bulkRequest) {
+    return bulkRequest.requests().stream().map(DocWriteRequest::id).collect(toList());
+  }
+
+  private static Exception rejected() {
+    return new EsRejectedExecutionException("rejected execution of bulk");
+  }
+
+}
@@ -0,0 +1,24 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.Test;
+
+public class BulkStatisticsTest {
+
+  @Test
+  public void computesTheIndexedDocumentsPerSecond() {
+    BulkStatistics statistics = new BulkStatistics(3000, 12, Duration.ofMillis(1500));
+
+    assertThat(statistics.getDocumentsPerSecond()).isEqualTo(2000.0);
+  }
+
+  @Test
+  public void computesTheDocumentsPerSecondOfADispatchThatTookLessThanAMillisecond() {
+    BulkStatistics statistics = new BulkStatistics(5, 0, Duration.ofNanos(1000));
+
+    assertThat(statistics.getDocumentsPerSecond()).isEqualTo(5000.0);
+  }
+
+}
@@ -0,0 +1,175 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+  private static final int WINDOW_SIZE = 4;
+  private static final long OPEN_FOREVER = Long.MAX_VALUE / 1_000_000;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  @Test
+  public void staysClosedUntilTheWindowIsFull() {
+    CircuitBreaker circuitBreaker = newCircuitBreaker(OPEN_FOREVER);
+
+    recordFailures(circuitBreaker, WINDOW_SIZE - 1);
+
+    assertThat(circuitBreaker.isOpen()).isFalse();
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+  }
+
+  @Test
+  public void staysClosedBelowTheFailureRateThreshold() {
+    CircuitBreaker circuitBreaker = newCircuitBreaker(OPEN_FOREVER);
+
+    recordSuccesses(circuitBreaker, 3);
+    recordFailures(circuitBreaker, 1);
+
+    assertThat(circuitBreaker.isOpen()).isFalse();
+  }
+
+  @Test
+  public void opensWhenTheFailureRateReachesTheThreshold() {
+    CircuitBreaker circuitBreaker = newCircuitBreaker(OPEN_FOREVER);
+
+    recordSuccesses(circuitBreaker, 2);
+    recordFailures(circuitBreaker, 2);
+
+    assertThat(circuitBreaker.isOpen()).isTrue();
+    assertThat(circuitBreaker.tryAcquirePermission()).isFalse();
+    assertThat(meterRegistry.get("elasticsearch.circuit.breaker.open").gauge().value()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void forgetsOutcomesThatLeftTheWindow() {
+    CircuitBreaker circuitBreaker = newCircuitBreaker(OPEN_FOREVER);
+
+    recordFailures(circuitBreaker, 1);
+    recordSuccesses(circuitBreaker, WINDOW_SIZE);
+    recordFailures(circuitBreaker, 1);
+
+    assertThat(circuitBreaker.isOpen()).isFalse();
+  }
+
+  @Test
+  public void ignoresOutcomesThatSayNothingAboutTheCluster() {
+    CircuitBreaker circuitBreaker = newCircuitBreaker(OPEN_FOREVER);
+
+    recordSuccesses(circuitBreaker, 2);
+    recordFailures(circuitBreaker, 1);
+    for (int i = 0; i < WINDOW_SIZE; i++) {
+      circuitBreaker.tryAcquirePermission();
+      circuitBreaker.onIgnored();
+    }
+
+    assertThat(circuitBreaker.isOpen()).isFalse();
+  }
+
+  @Test
+  public void letsASingleProbeThroughAfterTheOpenPeriod() {
+    CircuitBreaker circuitBreaker = openCircuitBreaker(0);
+
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+    assertThat(circuitBreaker.tryAcquirePermission()).isFalse();
+    assertThat(circuitBreaker.isOpen()).isTrue();
+  }
+
+  @Test
+  public void closesWhenTheProbeSucceeds() {
+    CircuitBreaker circuitBreaker = openCircuitBreaker(0);
+
+    circuitBreaker.tryAcquirePermission();
+    circuitBreaker.onSuccess();
+
+    assertThat(circuitBreaker.isOpen()).isFalse();
+    assertThat(meterRegistry.get("elasticsearch.circuit.breaker.open").gauge().value()).isEqualTo(0.0);
+
+    recordFailures(circuitBreaker, WINDOW_SIZE - 1);
+
+    assertThat(circuitBreaker.isOpen()).isFalse();
+  }
+
+  @Test
+  public void opensAgainWhenTheProbeFails() {
+    CircuitBreaker circuitBreaker = openCircuitBreaker(0);
+
+    circuitBreaker.tryAcquirePermission();
+    circuitBreaker.onFailure();
+
+    assertThat(circuitBreaker.isOpen()).isTrue();
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+  }
+
+  @Test
+  public void keepsTheBreakerOpenWhenTheProbeIsIgnored() {
+    CircuitBreaker circuitBreaker = openCircuitBreaker(0);
+
+    circuitBreaker.tryAcquirePermission();
+    circuitBreaker.onIgnored();
+
+    assertThat(circuitBreaker.isOpen()).isTrue();
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+  }
+
+  @Test
+  public void waitsAnotherOpenPeriodBeforeTheNextProbeIfTheProbeIsIgnored() {
+    CircuitBreaker circuitBreaker = openCircuitBreaker(1000);
+    nanoTime.addAndGet(MILLISECONDS.toNanos(1000));
+
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+    circuitBreaker.onIgnored();
+
+    assertThat(circuitBreaker.tryAcquirePermission()).isFalse();
+
+    nanoTime.addAndGet(MILLISECONDS.toNanos(1000));
+
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+  }
+
+  @Test
+  public void rejectsRequestsUntilTheOpenPeriodHasPassed() {
+    CircuitBreaker circuitBreaker = openCircuitBreaker(OPEN_FOREVER);
+
+    circuitBreaker.onSuccess();
+
+    assertThat(circuitBreaker.isOpen()).isTrue();
+    assertThat(circuitBreaker.tryAcquirePermission()).isFalse();
+  }
+
+  private CircuitBreaker newCircuitBreaker(long openMillis) {
+    return new CircuitBreaker(meterRegistry, WINDOW_SIZE, 0.5, openMillis, nanoTime::get);
+  }
+
+  private CircuitBreaker openCircuitBreaker(long openMillis) {
+    CircuitBreaker circuitBreaker = newCircuitBreaker(openMillis);
+
+    recordFailures(circuitBreaker, WINDOW_SIZE);
+
+    assertThat(circuitBreaker.isOpen()).isTrue();
+
+    return circuitBreaker;
+  }
+
+  private static void recordSuccesses(CircuitBreaker circuitBreaker, int calls) {
+    for (int i = 0; i < calls; i++) {
+      assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+      circuitBreaker.onSuccess();
+    }
+  }
+
+  private static void recordFailures(CircuitBreaker circuitBreaker, int calls) {
+    for (int i = 0; i < calls; i++) {
+      assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+      circuitBreaker.onFailure();
+    }
+  }
+
+}
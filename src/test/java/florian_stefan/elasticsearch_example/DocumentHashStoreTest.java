@@ -0,0 +1,135 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DocumentHashStoreTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path path;
+
+  @Before
+  public void setUp() {
+    path = temporaryFolder.getRoot().toPath().resolve("product-hashes.bin");
+  }
+
+  @Test
+  public void startsEmptyWithoutFile() {
+    DocumentHashStore.Changes changes = newStore().newDelta();
+
+    assertThat(changes.test(index("1", "Tea"))).isTrue();
+    assertThat(Files.exists(path)).isFalse();
+  }
+
+  @Test
+  public void doesNotReadTheFileUntilItIsUsed() throws Exception {
+    Files.write(path, new byte[] {1});
+
+    DocumentHashStore store = newStore();
+
+    assertThatThrownBy(store::newDelta).isInstanceOf(RuntimeException.class);
+  }
+
+  @Test
+  public void loadsTheHashesSavedByAnotherInstance() {
+    DocumentHashStore store = newStore();
+    DocumentHashStore.Changes changes = store.newDelta();
+    changes.test(index("1", "Tea"));
+    changes.test(index("2", "Cheese"));
+    store.apply(changes);
+
+    DocumentHashStore.Changes reloadedChanges = newStore().newDelta();
+
+    assertThat(reloadedChanges.test(index("1", "Tea"))).isFalse();
+    assertThat(reloadedChanges.test(index("2", "Blue Cheese"))).isTrue();
+    assertThat(reloadedChanges.test(index("3", "Wine"))).isTrue();
+    assertThat(reloadedChanges.getSkippedDocuments()).isEqualTo(1);
+    assertThat(reloadedChanges.getChangedIds()).containsOnly("2", "3");
+  }
+
+  @Test
+  public void forgetsDeletedDocuments() {
+    DocumentHashStore store = newStore();
+    apply(store, store.newDelta(), index("1", "Tea"));
+    apply(store, store.newDelta(), delete("1"));
+
+    DocumentHashStore.Changes changes = newStore().newDelta();
+
+    assertThat(changes.test(index("1", "Tea"))).isTrue();
+  }
+
+  @Test
+  public void keepsADocumentThatIsDeletedAndIndexedAgainInOneDelta() {
+    DocumentHashStore store = newStore();
+    DocumentHashStore.Changes changes = store.newDelta();
+    changes.test(delete("1"));
+    changes.test(index("1", "Tea"));
+    store.apply(changes);
+
+    assertThat(newStore().newDelta().test(index("1", "Tea"))).isFalse();
+  }
+
+  @Test
+  public void replacesAllHashesWithASnapshot() {
+    DocumentHashStore store = newStore();
+    apply(store, store.newDelta(), index("1", "Tea"), index("2", "Cheese"));
+
+    DocumentHashStore.Changes snapshot = store.newSnapshot();
+
+    assertThat(snapshot.test(index("1", "Tea"))).isTrue();
+    store.apply(snapshot);
+
+    DocumentHashStore.Changes changes = newStore().newDelta();
+
+    assertThat(changes.test(index("1", "Tea"))).isFalse();
+    assertThat(changes.test(index("2", "Cheese"))).isTrue();
+  }
+
+  @Test
+  public void keepsTheHashesOfChangesThatWereNotApplied() {
+    DocumentHashStore store = newStore();
+    apply(store, store.newDelta(), index("1", "Tea"));
+
+    store.newDelta().test(index("1", "Green Tea"));
+
+    DocumentHashStore.Changes changes = newStore().newDelta();
+
+    assertThat(changes.test(index("1", "Tea"))).isFalse();
+    assertThat(changes.test(index("1", "Green Tea"))).isTrue();
+  }
+
+  private DocumentHashStore newStore() {
+    return new DocumentHashStore(path.toString());
+  }
+
+  private static void apply(DocumentHashStore store, DocumentHashStore.Changes changes,
+      DocWriteRequest<?>... requests) {
+    for (DocWriteRequest<?> request : requests) {
+      changes.test(request);
+    }
+
+    store.apply(changes);
+  }
+
+  private static IndexRequest index(String id, String name) {
+    return new IndexRequest("products", "_doc", id).source("{\"name\":\"" + name + "\"}", XContentType.JSON);
+  }
+
+  private static DeleteRequest delete(String id) {
+    return new DeleteRequest("products", "_doc", id);
+  }
+
+}
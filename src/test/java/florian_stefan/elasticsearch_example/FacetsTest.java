@@ -0,0 +1,79 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.TermQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+
+public class FacetsTest {
+
+  private static final QueryBuilder STATUS_FILTER = new TermQueryBuilder("status", "active");
+  private static final QueryBuilder PRICE_RANGE_FILTER = new RangeQueryBuilder("price").gte(25.0).lte(50.0);
+  private static final QueryBuilder CATEGORY_FILTER = new TermQueryBuilder("category_names", "Tea");
+
+  private static final Map<String, QueryBuilder> FILTERS = Map.of(
+      Facets.STATUSES, STATUS_FILTER,
+      Facets.PRICE_RANGES, PRICE_RANGE_FILTER,
+      Facets.CATEGORIES, CATEGORY_FILTER);
+
+  @Test
+  public void filtersEveryFacetByTheFiltersOfTheOtherFacetsOnly() {
+    SearchSourceBuilder sourceBuilder = Facets.appendAggregations(new SearchSourceBuilder(), FILTERS);
+
+    assertThat(getFilters(sourceBuilder, Facets.STATUSES))
+        .containsExactlyInAnyOrder(PRICE_RANGE_FILTER, CATEGORY_FILTER);
+    assertThat(getFilters(sourceBuilder, Facets.PRICE_RANGES))
+        .containsExactlyInAnyOrder(STATUS_FILTER, CATEGORY_FILTER);
+    assertThat(getFilters(sourceBuilder, Facets.CATEGORIES))
+        .containsExactlyInAnyOrder(STATUS_FILTER, PRICE_RANGE_FILTER);
+  }
+
+  @Test
+  public void aggregatesEveryFacetBelowItsFilter() {
+    SearchSourceBuilder sourceBuilder = Facets.appendAggregations(new SearchSourceBuilder(), FILTERS);
+
+    for (String facet : List.of(Facets.STATUSES, Facets.PRICE_RANGES, Facets.CATEGORIES)) {
+      assertThat(getFilterAggregation(sourceBuilder, facet).getSubAggregations())
+          .extracting(AggregationBuilder::getName)
+          .containsExactly(facet);
+    }
+  }
+
+  @Test
+  public void leavesTheFacetsOfAnUnfilteredSearchUnfiltered() {
+    SearchSourceBuilder sourceBuilder = Facets.appendAggregations(new SearchSourceBuilder());
+
+    assertThat(getFilters(sourceBuilder, Facets.STATUSES)).isEmpty();
+    assertThat(getFilters(sourceBuilder, Facets.PRICE_RANGES)).isEmpty();
+    assertThat(getFilters(sourceBuilder, Facets.CATEGORIES)).isEmpty();
+  }
+
+  @Test
+  public void combinesTheFiltersOfAllFacets() {
+    BoolQueryBuilder postFilter = Facets.combine(FILTERS.values());
+
+    assertThat(postFilter.filter()).containsExactlyInAnyOrder(STATUS_FILTER, PRICE_RANGE_FILTER, CATEGORY_FILTER);
+    assertThat(postFilter.must()).isEmpty();
+  }
+
+  private static List<QueryBuilder> getFilters(SearchSourceBuilder sourceBuilder, String facet) {
+    return ((BoolQueryBuilder) getFilterAggregation(sourceBuilder, facet).getFilter()).filter();
+  }
+
+  private static FilterAggregationBuilder getFilterAggregation(SearchSourceBuilder sourceBuilder, String facet) {
+    return sourceBuilder.aggregations().getAggregatorFactories().stream()
+        .filter(aggregationBuilder -> aggregationBuilder.getName().equals(facet))
+        .map(FilterAggregationBuilder.class::cast)
+        .findFirst()
+        .orElseThrow();
+  }
+
+}
@@ -0,0 +1,165 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.apache.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.apache.http.HttpHeaders.CONTENT_ENCODING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class GzipHttpAsyncClientTest {
+
+  private static final HttpHost HOST = new HttpHost("localhost", 9200);
+  private static final String LARGE_BODY = "{\"query\":{\"match\":{\"name\":\"green tea\"}}}";
+  private static final String SMALL_BODY = "{}";
+
+  private final CloseableHttpAsyncClient httpAsyncClient = mock(CloseableHttpAsyncClient.class);
+  private final HttpAsyncClientBuilder httpClientBuilder = mock(HttpAsyncClientBuilder.class);
+  @SuppressWarnings("unchecked")
+  private final HttpAsyncResponseConsumer<HttpResponse> responseConsumer = mock(HttpAsyncResponseConsumer.class);
+
+  private CloseableHttpAsyncClient gzipHttpAsyncClient;
+  private HttpAsyncResponseConsumer<?> decompressingResponseConsumer;
+
+  @Before
+  public void setUp() {
+    when(httpClientBuilder.build()).thenReturn(httpAsyncClient);
+
+    gzipHttpAsyncClient = GzipHttpAsyncClient.wrap(httpClientBuilder, 16).build();
+  }
+
+  @Test
+  public void compressesRequestBodiesOfAtLeastTheMinimumSize() throws Exception {
+    HttpEntity entity = getEntity(send(LARGE_BODY));
+
+    assertThat(entity.getContentEncoding().getValue()).isEqualTo("gzip");
+    assertThat(entity.getContentType().getValue()).isEqualTo(ContentType.APPLICATION_JSON.toString());
+    assertThat(EntityUtils.toString(new GzipDecompressingEntity(entity))).isEqualTo(LARGE_BODY);
+  }
+
+  @Test
+  public void sendsSmallerRequestBodiesAsTheyAre() throws Exception {
+    HttpEntity entity = getEntity(send(SMALL_BODY));
+
+    assertThat(entity.getContentEncoding()).isNull();
+    assertThat(EntityUtils.toString(entity)).isEqualTo(SMALL_BODY);
+  }
+
+  @Test
+  public void acceptsGzippedResponses() throws Exception {
+    HttpRequest request = send(SMALL_BODY);
+
+    assertThat(request.getHeaders(ACCEPT_ENCODING)).extracting(Header::getValue).containsExactly("gzip");
+  }
+
+  @Test
+  public void acceptsGzippedResponsesOnceIfARetriedRequestAlreadyDoes() throws Exception {
+    HttpPost post = post(SMALL_BODY);
+    post.addHeader(ACCEPT_ENCODING, "gzip");
+
+    HttpRequest request = send(post);
+
+    assertThat(request.getHeaders(ACCEPT_ENCODING)).extracting(Header::getValue).containsExactly("gzip");
+  }
+
+  @Test
+  public void decompressesResponsesGzippedTheWayRequestBodiesAre() throws Exception {
+    HttpEntity gzippedEntity = getEntity(send(LARGE_BODY));
+
+    HttpResponse response = receive(gzippedEntity);
+
+    assertThat(response.containsHeader(CONTENT_ENCODING)).isFalse();
+    assertThat(EntityUtils.toString(response.getEntity())).isEqualTo(LARGE_BODY);
+  }
+
+  @Test
+  public void passesUncompressedResponsesThrough() throws Exception {
+    send(SMALL_BODY);
+
+    HttpResponse response = receive(new NStringEntity(SMALL_BODY, ContentType.APPLICATION_JSON));
+
+    assertThat(EntityUtils.toString(response.getEntity())).isEqualTo(SMALL_BODY);
+  }
+
+  @Test
+  public void closesTheProducerItReplaces() throws Exception {
+    HttpAsyncRequestProducer requestProducer = spy(HttpAsyncMethods.create(HOST, post(SMALL_BODY)));
+
+    gzipHttpAsyncClient.execute(requestProducer, responseConsumer, null, null);
+
+    verify(requestProducer).close();
+  }
+
+  /**
+   * Sends a request with the given body and returns the request the wrapped client has been asked to execute.
+   */
+  private HttpRequest send(String body) throws Exception {
+    return send(post(body));
+  }
+
+  /**
+   * Sends the given request and returns the request the wrapped client has been asked to execute.
+   */
+  @SuppressWarnings("rawtypes")
+  private HttpRequest send(HttpPost post) throws Exception {
+    ArgumentCaptor<HttpAsyncRequestProducer> requestProducer = ArgumentCaptor.forClass(HttpAsyncRequestProducer.class);
+    ArgumentCaptor<HttpAsyncResponseConsumer> consumer = ArgumentCaptor.forClass(HttpAsyncResponseConsumer.class);
+
+    gzipHttpAsyncClient.execute(HttpAsyncMethods.create(HOST, post), responseConsumer, null, null);
+
+    verify(httpAsyncClient).execute(requestProducer.capture(), consumer.capture(), any(), any());
+    decompressingResponseConsumer = consumer.getValue();
+
+    return requestProducer.getValue().generateRequest();
+  }
+
+  /**
+   * Lets the wrapped client receive a response with the given entity and returns the result passed on to the caller.
+   */
+  private HttpResponse receive(HttpEntity entity) {
+    HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    response.setEntity(entity);
+    if (entity.getContentEncoding() != null) {
+      response.setHeader(entity.getContentEncoding());
+    }
+    when(responseConsumer.getResult()).thenReturn(response);
+
+    return (HttpResponse) decompressingResponseConsumer.getResult();
+  }
+
+  private static HttpPost post(String body) {
+    HttpPost post = new HttpPost("/products/_search");
+    post.setEntity(new NStringEntity(body, ContentType.APPLICATION_JSON));
+
+    return post;
+  }
+
+  private static HttpEntity getEntity(HttpRequest request) {
+    return ((HttpEntityEnclosingRequest) request).getEntity();
+  }
+
+}
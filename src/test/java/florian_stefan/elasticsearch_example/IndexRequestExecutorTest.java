@@ -0,0 +1,118 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions.Type.ADD;
+import static org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions.Type.REMOVE_INDEX;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class IndexRequestExecutorTest {
+
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  private final RestHighLevelClient restHighLevelClient = mock(RestHighLevelClient.class);
+  private final IndicesClient indices = mock(IndicesClient.class);
+  private final RestClient restClient = mock(RestClient.class);
+  private final BulkRequestDispatcher bulkRequestDispatcher = mock(BulkRequestDispatcher.class);
+  private final ApplicationEventPublisher applicationEventPublisher = mock(ApplicationEventPublisher.class);
+  private final IndexStatus indexStatus = new IndexStatus();
+
+  private IndexRequestExecutor indexRequestExecutor;
+
+  @Before
+  public void setUp() throws Exception {
+    IndexRequestParser indexRequestParser = new IndexRequestParser();
+    ReflectionTestUtils.setField(indexRequestParser, "mappingResource", new ClassPathResource("mapping.json"));
+    ReflectionTestUtils.setField(indexRequestParser, "productsResource", new ClassPathResource("products.json"));
+
+    indexRequestExecutor = new IndexRequestExecutor(restHighLevelClient,
+        new ElasticsearchMetrics(new SimpleMeterRegistry()), indexRequestParser, bulkRequestDispatcher,
+        mock(DocumentHashStore.class), mock(IndexWarmer.class), indexStatus, applicationEventPublisher);
+    ReflectionTestUtils.setField(indexRequestExecutor, "waitForGreenTimeout", "1s");
+    ReflectionTestUtils.setField(indexRequestExecutor, "deltaDirectory", "");
+
+    when(restHighLevelClient.indices()).thenReturn(indices);
+    when(restHighLevelClient.getLowLevelClient()).thenReturn(restClient);
+    givenTheAliasPointsTo("products_v1");
+    indexStatus.ready();
+  }
+
+  @After
+  public void tearDown() {
+    indexRequestExecutor.destroy();
+  }
+
+  @Test
+  public void swapsTheAliasToTheNextVersionOnceTheProductsAreIndexed() throws Exception {
+    when(bulkRequestDispatcher.dispatch(any(), any())).thenReturn(new BulkStatistics(3, 0, Duration.ofMillis(10)));
+    ArgumentCaptor<IndicesAliasesRequest> indicesAliasesRequest = ArgumentCaptor.forClass(IndicesAliasesRequest.class);
+
+    assertThat(indexRequestExecutor.reindexProducts()).isTrue();
+
+    verify(indices, timeout(TIMEOUT_MILLIS)).updateAliases(indicesAliasesRequest.capture());
+    verify(indices).create(argThat(createIndexRequest -> createIndexRequest.index().equals("products_v2")));
+    List<AliasActions> aliasActions = indicesAliasesRequest.getValue().getAliasActions();
+    assertThat(aliasActions).extracting(AliasActions::actionType).containsExactly(ADD, REMOVE_INDEX);
+    assertThat(aliasActions.get(0).indices()).containsExactly("products_v2");
+    assertThat(aliasActions.get(1).indices()).containsExactly("products_v1");
+    verify(applicationEventPublisher, timeout(TIMEOUT_MILLIS))
+        .publishEvent((Object) IndexChangedEvent.ofIndex("products"));
+  }
+
+  @Test
+  public void keepsTheAliasOnTheCurrentIndexIfTheReindexFails() throws Exception {
+    when(bulkRequestDispatcher.dispatch(any(), any())).thenReturn(new BulkStatistics(2, 1, Duration.ofMillis(10)));
+
+    assertThat(indexRequestExecutor.reindexProducts()).isTrue();
+
+    verify(indices, timeout(TIMEOUT_MILLIS)).delete(argThat(deleteIndexRequest ->
+        List.of(deleteIndexRequest.indices()).equals(List.of("products_v2"))));
+    verify(indices, never()).updateAliases(any());
+    verifyZeroInteractions(applicationEventPublisher);
+  }
+
+  @Test
+  public void rejectsAReindexUntilTheIndexIsReady() {
+    indexStatus.loading();
+
+    assertThat(indexRequestExecutor.reindexProducts()).isFalse();
+    verifyZeroInteractions(restHighLevelClient, bulkRequestDispatcher);
+  }
+
+  private void givenTheAliasPointsTo(String index) throws Exception {
+    Response response = mock(Response.class);
+    String aliases = "{\"" + index + "\":{\"aliases\":{\"products\":{}}}}";
+
+    when(response.getEntity()).thenReturn(new StringEntity(aliases, ContentType.create("application/json", UTF_8)));
+    when(indices.existsAlias(any(GetAliasesRequest.class))).thenReturn(true);
+    when(restClient.performRequest("GET", "/_alias/products")).thenReturn(response);
+  }
+
+}
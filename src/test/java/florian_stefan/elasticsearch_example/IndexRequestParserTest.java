@@ -0,0 +1,184 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions.Type.ADD;
+import static org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions.Type.REMOVE_INDEX;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class IndexRequestParserTest {
+
+  private IndexRequestParser indexRequestParser;
+
+  @Before
+  public void setUp() {
+    indexRequestParser = new IndexRequestParser();
+    ReflectionTestUtils.setField(indexRequestParser, "bulkMaxActions", 1000);
+    ReflectionTestUtils.setField(indexRequestParser, "bulkMaxSizeInBytes", 5L * 1024 * 1024);
+  }
+
+  @Test
+  public void splitsBulkRequestsByNumberOfActions() {
+    ReflectionTestUtils.setField(indexRequestParser, "bulkMaxActions", 2);
+
+    List<BulkRequest> bulkRequests = parse(products(5));
+
+    assertThat(bulkRequests).extracting(BulkRequest::numberOfActions).containsExactly(2, 2, 1);
+  }
+
+  @Test
+  public void splitsBulkRequestsBySize() {
+    long sizeOfOneAction = parse(products(1)).get(0).estimatedSizeInBytes();
+    ReflectionTestUtils.setField(indexRequestParser, "bulkMaxSizeInBytes", 2 * sizeOfOneAction);
+
+    List<BulkRequest> bulkRequests = parse(products(5));
+
+    assertThat(bulkRequests).extracting(BulkRequest::numberOfActions).containsExactly(2, 2, 1);
+    assertThat(bulkRequests).allSatisfy(bulkRequest ->
+        assertThat(bulkRequest.estimatedSizeInBytes()).isLessThanOrEqualTo(2 * sizeOfOneAction));
+  }
+
+  @Test
+  public void keepsTheOrderOfTheActions() {
+    List<DocWriteRequest> requests = parse(Stream.of(
+        "{\"index\":{\"_id\":\"1\"}}", "{\"name\":\"Tea\"}",
+        "{\"delete\":{\"_id\":\"2\"}}",
+        "{\"index\":{\"_id\":\"3\"}}", "{\"name\":\"Cheese\"}"))
+        .get(0).requests();
+
+    assertThat(requests).extracting(DocWriteRequest::id).containsExactly("1", "2", "3");
+    assertThat(requests).extracting(DocWriteRequest::index).containsOnly("products");
+    assertThat(requests.get(1)).isInstanceOf(DeleteRequest.class);
+  }
+
+  @Test
+  public void skipsEmptyLinesAndActionsRejectedByTheFilter() {
+    Stream<String> lines = Stream.of(
+        "{\"index\":{\"_id\":\"1\"}}", "{\"name\":\"Tea\"}",
+        "",
+        "{\"index\":{\"_id\":\"2\"}}", "{\"name\":\"Cheese\"}");
+
+    List<BulkRequest> bulkRequests = indexRequestParser
+        .getBulkRequests("products", lines, request -> !request.id().equals("1"))
+        .collect(toList());
+
+    assertThat(bulkRequests).hasSize(1);
+    assertThat(bulkRequests.get(0).requests()).extracting(DocWriteRequest::id).containsExactly("2");
+  }
+
+  @Test
+  public void returnsNoBulkRequestsWithoutActions() {
+    assertThat(parse(Stream.of("", " "))).isEmpty();
+  }
+
+  @Test
+  public void addsTheIdToTheSource() {
+    IndexRequest indexRequest = parseIndexRequest("{\"name\":\"Tea\"}");
+
+    assertThat(indexRequest.sourceAsMap()).containsEntry("id", "7").containsEntry("name", "Tea");
+  }
+
+  @Test
+  public void addsTheIdToAnEmptySource() {
+    IndexRequest indexRequest = parseIndexRequest(" { } ");
+
+    assertThat(indexRequest.sourceAsMap()).containsOnlyKeys("id").containsEntry("id", "7");
+  }
+
+  @Test
+  public void replacesAnIdThatIsAlreadyInTheSource() {
+    IndexRequest indexRequest = parseIndexRequest("{\"id\":\"other\",\"name\":\"Tea\",\"tags\":[\"id\"]}");
+
+    assertThat(indexRequest.sourceAsMap())
+        .containsEntry("id", "7")
+        .containsEntry("name", "Tea")
+        .containsEntry("tags", List.of("id"));
+  }
+
+  @Test
+  public void encodesTheSourceWithTheConfiguredContentType() {
+    ReflectionTestUtils.setField(indexRequestParser, "bulkContentType", XContentType.SMILE);
+
+    IndexRequest indexRequest = parseIndexRequest("{\"name\":\"Tea\"}");
+
+    assertThat(indexRequest.getContentType()).isEqualTo(XContentType.SMILE);
+    assertThat(indexRequest.sourceAsMap()).containsEntry("id", "7").containsEntry("name", "Tea");
+  }
+
+  @Test
+  public void swapsTheAliasToTheNewIndexAndRemovesThePreviousIndicesInOneRequest() {
+    IndicesAliasesRequest indicesAliasesRequest = indexRequestParser.getSwapAliasRequest("products_v2",
+        Set.of("products_v1"));
+
+    List<AliasActions> aliasActions = indicesAliasesRequest.getAliasActions();
+
+    assertThat(aliasActions).extracting(AliasActions::actionType).containsExactly(ADD, REMOVE_INDEX);
+    assertThat(aliasActions.get(0).indices()).containsExactly("products_v2");
+    assertThat(aliasActions.get(0).aliases()).containsExactly("products");
+    assertThat(aliasActions.get(1).indices()).containsExactly("products_v1");
+  }
+
+  @Test
+  public void skipsTheStatusRecordOfACompleteExport() {
+    List<BulkRequest> bulkRequests = parse(Stream.of(
+        "{\"index\":{\"_id\":\"1\"}}", "{\"name\":\"Tea\"}",
+        "{\"export\":{\"status\":\"complete\",\"products\":1}}"));
+
+    assertThat(bulkRequests).hasSize(1);
+    assertThat(bulkRequests.get(0).numberOfActions()).isEqualTo(1);
+  }
+
+  @Test
+  public void rejectsTheStatusRecordOfAFailedExport() {
+    Stream<String> lines = Stream.of(
+        "{\"index\":{\"_id\":\"1\"}}", "{\"name\":\"Tea\"}",
+        "{\"export\":{\"status\":\"failed\",\"products\":1,\"error\":\"Connection closed\"}}");
+
+    assertThatThrownBy(() -> parse(lines)).hasMessageStartingWith("Expected a complete export");
+  }
+
+  @Test
+  public void rejectsAnIndexActionWithoutSource() {
+    assertThatThrownBy(() -> parse(Stream.of("{\"index\":{\"_id\":\"1\"}}")))
+        .hasMessage("Missing source for document with id 1");
+  }
+
+  @Test
+  public void rejectsAnActionWithoutId() {
+    assertThatThrownBy(() -> parse(Stream.of("{\"index\":{}}", "{\"name\":\"Tea\"}")))
+        .hasMessageStartingWith("Expected index or delete action with an _id");
+  }
+
+  private IndexRequest parseIndexRequest(String source) {
+    List<BulkRequest> bulkRequests = parse(Stream.of("{\"index\":{\"_id\":\"7\"}}", source));
+
+    return (IndexRequest) bulkRequests.get(0).requests().get(0);
+  }
+
+  private List<BulkRequest> parse(Stream<String> lines) {
+    try (Stream<BulkRequest> bulkRequests = indexRequestParser.getBulkRequests("products", lines, request -> true)) {
+      return bulkRequests.collect(toList());
+    }
+  }
+
+  private static Stream<String> products(int count) {
+    return Stream.iterate(1, id -> id + 1)
+        .limit(count)
+        .flatMap(id -> Stream.of("{\"index\":{\"_id\":\"" + id + "\"}}", "{\"name\":\"Product " + id + "\"}"));
+  }
+
+}
@@ -0,0 +1,92 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.ui.ExtendedModelMap;
+
+public class ProductBatchControllerTest {
+
+  private final IndexStatus indexStatus = new IndexStatus();
+  private final ProductCache productCache = mock(ProductCache.class);
+  private final ProductBatchController productBatchController = new ProductBatchController(indexStatus, productCache);
+  private final ExtendedModelMap model = new ExtendedModelMap();
+
+  @Before
+  public void setUp() {
+    indexStatus.ready();
+    ReflectionTestUtils.setField(productBatchController, "maxBatchSize", 3);
+
+    when(productCache.getProducts(anyList())).thenReturn(completedFuture(new ProductLookup(Map.of(
+        "1", new ProductSearchResult().setId("1"),
+        "2", new ProductSearchResult().setId("2")), Set.of("8"))));
+  }
+
+  @Test
+  public void answersJsonRequestsWithTheBatch() {
+    ProductBatch productBatch = productBatchController.getProductBatch(List.of("2", "9", "1")).join();
+
+    assertThat(productBatch.getProducts()).extracting("id").containsExactly("2", "1");
+    assertThat(productBatch.getMissingIds()).containsExactly("9");
+  }
+
+  @Test
+  public void answersWithTheProductsThatLoadedIfOthersFailed() {
+    ProductBatch productBatch = productBatchController.getProductBatch(List.of("1", "8", "2")).join();
+
+    assertThat(productBatch.getProducts()).extracting("id").containsExactly("1", "2");
+    assertThat(productBatch.getMissingIds()).isEmpty();
+    assertThat(productBatch.getFailedIds()).containsExactly("8");
+  }
+
+  @Test
+  public void rendersTheBatchForBrowsers() {
+    String view = productBatchController.getProductBatch(List.of("1", "2"), model).join();
+
+    assertThat(view).isEqualTo("product-batch");
+    assertThat(((ProductBatch) model.get("productBatch")).getProducts()).extracting("id").containsExactly("1", "2");
+  }
+
+  @Test
+  public void looksUpEveryIdOnceWithoutBlanks() {
+    productBatchController.getProductBatch(List.of(" 2", "1", "", "2 ", "1")).join();
+
+    verify(productCache).getProducts(List.of("2", "1"));
+  }
+
+  @Test
+  public void countsOnlyDistinctIdsAgainstTheMaximumBatchSize() {
+    ProductBatch productBatch = productBatchController.getProductBatch(List.of("1", "2", "1", "2", "9")).join();
+
+    assertThat(productBatch.getMissingIds()).containsExactly("9");
+  }
+
+  @Test
+  public void rejectsBatchesWithTooManyIds() {
+    assertThatThrownBy(() -> productBatchController.getProductBatch(List.of("1", "2", "3", "4")))
+        .hasMessage("At most 3 products can be looked up at once.");
+    verifyZeroInteractions(productCache);
+  }
+
+  @Test
+  public void rejectsRequestsUntilTheIndexIsReady() {
+    indexStatus.loading();
+
+    assertThatThrownBy(() -> productBatchController.getProductBatch(List.of("1"), model))
+        .hasMessage("The products index is not available yet (LOADING).");
+    verifyZeroInteractions(productCache);
+  }
+
+}
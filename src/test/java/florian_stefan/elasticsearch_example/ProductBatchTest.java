@@ -0,0 +1,67 @@
+package florian_stefan.elasticsearch_example;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+public class ProductBatchTest {
+
+  @Test
+  public void keepsTheOrderOfTheIds() {
+    ProductBatch productBatch = ProductBatch.of(List.of("3", "1", "2"), products("1", "2", "3"), Set.of());
+
+    assertThat(productBatch.getProducts()).extracting("id").containsExactly("3", "1", "2");
+    assertThat(productBatch.getMissingIds()).isEmpty();
+  }
+
+  @Test
+  public void listsTheIdsWithoutAProductInTheirOrder() {
+    ProductBatch productBatch = ProductBatch.of(List.of("9", "1", "8"), products("1"), Set.of());
+
+    assertThat(productBatch.getProducts()).extracting("id").containsExactly("1");
+    assertThat(productBatch.getMissingIds()).containsExactly("9", "8");
+  }
+
+  @Test
+  public void listsTheIdsOfProductsThatFailedToLoadApartFromTheMissingOnes() {
+    ProductBatch productBatch = ProductBatch.of(List.of("8", "1", "9", "7"), products("1"), Set.of("7", "8"));
+
+    assertThat(productBatch.getProducts()).extracting("id").containsExactly("1");
+    assertThat(productBatch.getMissingIds()).containsExactly("9");
+    assertThat(productBatch.getFailedIds()).containsExactly("8", "7");
+  }
+
+  @Test
+  public void ignoresProductsThatHaveNotBeenAskedFor() {
+    ProductBatch productBatch = ProductBatch.of(List.of("2"), products("1", "2"), Set.of());
+
+    assertThat(productBatch.getProducts()).extracting("id").containsExactly("2");
+  }
+
+  @Test
+  public void keepsCategoriesAndTagsAsListsOfNames() {
+    ProductSearchResult product = new ProductSearchResult().setId("1");
+    product.setTags(List.of("green", "loose", "green"));
+
+    ProductDocument productDocument = ProductBatch.of(List.of("1"), Map.of("1", product), Set.of())
+        .getProducts().get(0);
+
+    assertThat(productDocument.getTags()).containsExactly("green", "loose");
+    assertThat(productDocument.getCategories()).isEmpty();
+  }
+
+  private static Map<String, ProductSearchResult> products(String... ids) {
+    Map<String, ProductSearchResult> productsById = new HashMap<>();
+
+    for (String id : ids) {
+      productsById.put(id, new ProductSearchResult().setId(id));
+    }
+
+    return productsById;
+  }
+
+}
@@ -0,0 +1,185 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequest.Item;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.get.GetResult;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProductCacheTest {
+
+  private static final String MISSING_ID = "9";
+  private static final String FAILED_ID = "8";
+
+  private final SearchRequestExecutor searchRequestExecutor = mock(SearchRequestExecutor.class);
+  private final List<String> loadedIds = new ArrayList<>();
+  private final List<List<String>> multiGetIds = new ArrayList<>();
+
+  private ProductCache productCache;
+
+  @Before
+  public void setUp() {
+    productCache = new ProductCache(searchRequestExecutor, new IndexRequestParser(), new SimpleMeterRegistry(),
+        1024 * 1024, 600);
+
+    when(searchRequestExecutor.get(any(GetRequest.class))).thenAnswer(invocation -> {
+      GetRequest getRequest = invocation.getArgument(0);
+      loadedIds.add(getRequest.id());
+
+      return completedFuture(getResponse(getRequest.index(), getRequest.id()));
+    });
+    when(searchRequestExecutor.multiGet(any(MultiGetRequest.class))).thenAnswer(invocation -> {
+      List<Item> items = ((MultiGetRequest) invocation.getArgument(0)).getItems();
+      multiGetIds.add(items.stream().map(Item::id).collect(toList()));
+
+      return completedFuture(new MultiGetResponse(items.stream()
+          .map(item -> multiGetItemResponse(item.index(), item.id()))
+          .toArray(MultiGetItemResponse[]::new)));
+    });
+  }
+
+  @Test
+  public void loadsProductsFromTheIndex() {
+    ProductSearchResult product = productCache.getProduct("1").join();
+
+    assertThat(product.getId()).isEqualTo("1");
+    assertThat(product.getName()).isEqualTo("Product 1 from products");
+  }
+
+  @Test
+  public void servesCachedProductsWithoutLoadingThemAgain() {
+    productCache.getProduct("1").join();
+    productCache.getProduct("1").join();
+
+    assertThat(loadedIds).containsExactly("1");
+  }
+
+  @Test
+  public void evictsOnlyTheChangedDocuments() {
+    productCache.getProduct("1").join();
+    productCache.getProduct("2").join();
+
+    productCache.onIndexChanged(IndexChangedEvent.ofDocuments("products", Set.of("1")));
+    productCache.getProduct("1").join();
+    productCache.getProduct("2").join();
+
+    assertThat(loadedIds).containsExactly("1", "2", "1");
+  }
+
+  @Test
+  public void evictsAllProductsWhenTheWholeIndexChanged() {
+    productCache.getProduct("1").join();
+    productCache.getProduct("2").join();
+
+    productCache.onIndexChanged(IndexChangedEvent.ofIndex("products"));
+    productCache.getProduct("1").join();
+    productCache.getProduct("2").join();
+
+    assertThat(loadedIds).containsExactly("1", "2", "1", "2");
+  }
+
+  @Test
+  public void loadsAllProductsThatAreNotCachedWithASingleMultiGet() {
+    productCache.getProduct("2").join();
+
+    Map<String, ProductSearchResult> productsById = getProducts("1", "2", "3").getProductsById();
+
+    assertThat(productsById).containsOnlyKeys("1", "2", "3");
+    assertThat(productsById.get("3").getName()).isEqualTo("Product 3 from products");
+    assertThat(multiGetIds).hasSize(1);
+    assertThat(multiGetIds.get(0)).containsExactlyInAnyOrder("1", "3");
+  }
+
+  @Test
+  public void servesProductsLoadedByAMultiGetFromTheCache() {
+    getProducts("1", "2");
+
+    productCache.getProduct("1").join();
+    getProducts("2");
+
+    assertThat(loadedIds).isEmpty();
+    assertThat(multiGetIds).hasSize(1);
+  }
+
+  @Test
+  public void leavesOutProductsThatDoNotExist() {
+    ProductLookup productLookup = getProducts("1", MISSING_ID);
+
+    assertThat(productLookup.getProductsById()).containsOnlyKeys("1");
+    assertThat(productLookup.getFailedIds()).isEmpty();
+  }
+
+  @Test
+  public void reportsProductsThatFailedToLoadAndReturnsTheOthers() {
+    ProductLookup productLookup = getProducts("1", FAILED_ID, MISSING_ID);
+
+    assertThat(productLookup.getProductsById()).containsOnlyKeys("1");
+    assertThat(productLookup.getFailedIds()).containsExactly(FAILED_ID);
+  }
+
+  @Test
+  public void loadsProductsThatFailedToLoadAgain() {
+    getProducts("1", FAILED_ID);
+    getProducts("1", FAILED_ID);
+
+    assertThat(multiGetIds).containsExactly(List.of("1", FAILED_ID), List.of(FAILED_ID));
+  }
+
+  @Test
+  public void returnsTheCachedProductsIfTheMultiGetFails() {
+    productCache.getProduct("1").join();
+    when(searchRequestExecutor.multiGet(any(MultiGetRequest.class)))
+        .thenReturn(CompletableFuture.failedFuture(new ElasticsearchException("Elasticsearch is unavailable")));
+
+    ProductLookup productLookup = getProducts("1", "2", "3");
+
+    assertThat(productLookup.getProductsById()).containsOnlyKeys("1");
+    assertThat(productLookup.getFailedIds()).containsExactlyInAnyOrder("2", "3");
+  }
+
+  private ProductLookup getProducts(String... ids) {
+    return productCache.getProducts(List.of(ids)).join();
+  }
+
+  private static MultiGetItemResponse multiGetItemResponse(String index, String id) {
+    if (id.equals(FAILED_ID)) {
+      return new MultiGetItemResponse(null, new MultiGetResponse.Failure(index, "_doc", id,
+          new ElasticsearchException("No shard available for [" + id + "]")));
+    }
+
+    return new MultiGetItemResponse(getResponse(index, id), null);
+  }
+
+  private static GetResponse getResponse(String index, String id) {
+    if (id.equals(MISSING_ID)) {
+      return new GetResponse(new GetResult(index, "_doc", id, -1, false, null, null));
+    }
+
+    String source = "{\"name\":\"Product " + id + " from " + index + "\",\"status\":\"active\",\"price\":\"1.00\"}";
+
+    return new GetResponse(new GetResult(index, "_doc", id, 1, true, new BytesArray(source.getBytes(UTF_8)),
+        emptyMap()));
+  }
+
+}
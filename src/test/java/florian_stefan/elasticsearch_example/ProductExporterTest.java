@@ -0,0 +1,132 @@
+package florian_stefan.elasticsearch_example;
+
+import static florian_stefan.elasticsearch_example.SearchResponses.scrollResponse;
+import static florian_stefan.elasticsearch_example.SearchResponses.searchHit;
+import static florian_stefan.elasticsearch_example.SearchResponses.searchHits;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class ProductExporterTest {
+
+  @Rule
+  public final Timeout timeout = Timeout.seconds(10);
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final RestHighLevelClient restHighLevelClient = mock(RestHighLevelClient.class);
+  private final CircuitBreaker circuitBreaker = new CircuitBreaker(meterRegistry, 1, 0.5, 60_000);
+  private final ProductExporter productExporter = new ProductExporter(restHighLevelClient,
+      new ElasticsearchMetrics(meterRegistry), circuitBreaker, new IndexRequestParser(), 1, 1, 2, 60);
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+  @After
+  public void tearDown() {
+    productExporter.destroy();
+  }
+
+  @Test
+  public void endsACompleteExportWithAStatusRecord() throws Exception {
+    when(restHighLevelClient.search(any(SearchRequest.class))).thenReturn(scrollResponse("scroll", searchHits(1, 2)));
+    when(restHighLevelClient.searchScroll(any(SearchScrollRequest.class)))
+        .thenReturn(scrollResponse("scroll", searchHit("3")), scrollResponse("scroll"));
+
+    long exportedProducts = productExporter.export(withQuery("tea"), output);
+
+    assertThat(exportedProducts).isEqualTo(3);
+    assertThat(lines()).containsExactly(
+        "{\"index\":{\"_id\":\"1\"}}", source("1"),
+        "{\"index\":{\"_id\":\"2\"}}", source("2"),
+        "{\"index\":{\"_id\":\"3\"}}", source("3"),
+        "{\"export\":{\"status\":\"complete\",\"products\":3}}");
+    verify(restHighLevelClient).clearScroll(any(ClearScrollRequest.class));
+  }
+
+  @Test
+  public void endsAFailedExportWithAStatusRecordNamingTheError() throws Exception {
+    when(restHighLevelClient.search(any(SearchRequest.class))).thenReturn(scrollResponse("scroll", searchHits(1, 2)));
+    when(restHighLevelClient.searchScroll(any(SearchScrollRequest.class)))
+        .thenThrow(new IOException("connection reset"));
+
+    assertThatThrownBy(() -> productExporter.export(withQuery("tea"), output))
+        .hasRootCauseInstanceOf(IOException.class);
+
+    List<String> lines = lines();
+    assertThat(lines).hasSize(5);
+    assertThat(lines.get(4)).isEqualTo(
+        "{\"export\":{\"status\":\"failed\",\"products\":2,\"error\":\"java.io.IOException: connection reset\"}}");
+    verify(restHighLevelClient).clearScroll(any(ClearScrollRequest.class));
+  }
+
+  @Test
+  public void rejectsExportsBeyondTheConcurrencyLimit() throws Exception {
+    CountDownLatch searching = new CountDownLatch(1);
+    CountDownLatch respond = new CountDownLatch(1);
+    when(restHighLevelClient.search(any(SearchRequest.class))).thenAnswer(invocation -> {
+      searching.countDown();
+      respond.await();
+      return scrollResponse("scroll");
+    });
+    CompletableFuture<Long> runningExport = CompletableFuture
+        .supplyAsync(() -> productExporter.export(withQuery("tea"), new ByteArrayOutputStream()));
+    searching.await();
+
+    assertThatThrownBy(() -> productExporter.export(withQuery("tea"), output))
+        .hasMessage("Too many exports are running, try again later.");
+    assertThat(output.size()).isZero();
+
+    respond.countDown();
+
+    assertThat(runningExport.join()).isZero();
+    assertThat(productExporter.export(withQuery("tea"), output)).isZero();
+    assertThat(lines()).containsExactly("{\"export\":{\"status\":\"complete\",\"products\":0}}");
+  }
+
+  @Test
+  public void rejectsExportsWhileTheCircuitBreakerIsOpen() {
+    circuitBreaker.tryAcquirePermission();
+    circuitBreaker.onFailure();
+
+    assertThatThrownBy(() -> productExporter.export(withQuery("tea"), output))
+        .hasMessage("Elasticsearch is unavailable, exports are rejected until it recovers.");
+    assertThat(output.size()).isZero();
+    verifyZeroInteractions(restHighLevelClient);
+  }
+
+  private List<String> lines() {
+    return List.of(new String(output.toByteArray(), UTF_8).split("\n"));
+  }
+
+  private static String source(String id) {
+    return "{\"name\":\"Product " + id + "\",\"status\":\"active\",\"price\":\"1.00\"}";
+  }
+
+  private static ProductSearchRequest withQuery(String query) {
+    ProductSearchRequest searchRequest = new ProductSearchRequest();
+    searchRequest.setQuery(query);
+
+    return searchRequest;
+  }
+
+}
@@ -0,0 +1,70 @@
+package florian_stefan.elasticsearch_example;
+
+import static florian_stefan.elasticsearch_example.SearchResponses.searchHits;
+import static florian_stefan.elasticsearch_example.SearchResponses.searchResponse;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.ui.ExtendedModelMap;
+
+public class ProductSearchControllerTest {
+
+  private final IndexStatus indexStatus = new IndexStatus();
+  private final FacetCache facetCache = mock(FacetCache.class);
+  private final ProductCache productCache = mock(ProductCache.class);
+  private final SearchResultCache searchResultCache = mock(SearchResultCache.class);
+  private final ProductSearchController productSearchController = new ProductSearchController(indexStatus, facetCache,
+      productCache, searchResultCache);
+  private final ExtendedModelMap model = new ExtendedModelMap();
+
+  @Before
+  public void setUp() {
+    indexStatus.ready();
+  }
+
+  @Test
+  public void rendersTheResultListOnceThePageHasBeenLoaded() {
+    CompletableFuture<ProductSearchPage> page = new CompletableFuture<>();
+    when(searchResultCache.getSearchPage(any(ProductSearchRequest.class))).thenReturn(page);
+
+    CompletableFuture<String> view = productSearchController.getSearchResult(new ProductSearchRequest(), model);
+
+    assertThat(view).isNotDone();
+
+    page.complete(ProductSearchPage.of(new ProductSearchRequest(), QueryTier.EXACT,
+        searchResponse(12, searchHits(1, 5))));
+
+    assertThat(view.join()).isEqualTo("product-list");
+    assertThat(model).containsKeys("searchRequest", "pageInfo", "nextCursor", "searchResults", "statuses");
+    assertThat(model).doesNotContainKey("previousCursor");
+  }
+
+  @Test
+  public void failsTheProductPageOfAnUnknownProduct() {
+    when(productCache.getProduct("7")).thenReturn(completedFuture(null));
+
+    CompletableFuture<String> view = productSearchController.getSearchResult("7", model);
+
+    assertThatThrownBy(view::join).hasMessageContaining("There is no product with id 7.");
+  }
+
+  @Test
+  public void rejectsRequestsUntilTheIndexIsReady() {
+    indexStatus.loading();
+
+    assertThatThrownBy(() -> productSearchController.getSearchForm(model))
+        .hasMessage("The products index is not available yet (LOADING).");
+    verifyZeroInteractions(facetCache);
+  }
+
+}
@@ -0,0 +1,114 @@
+package florian_stefan.elasticsearch_example;
+
+import static florian_stefan.elasticsearch_example.SearchResponses.searchHit;
+import static florian_stefan.elasticsearch_example.SearchResponses.searchHits;
+import static florian_stefan.elasticsearch_example.SearchResponses.searchResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
+import org.junit.Test;
+
+public class ProductSearchPageTest {
+
+  @Test
+  public void linksTheFirstPageToTheNextOneOnly() {
+    ProductSearchPage page = ProductSearchPage.of(new ProductSearchRequest(), QueryTier.EXACT,
+        searchResponse(12, searchHits(1, 5)));
+
+    assertThat(page.getPageInfo()).isEqualTo("Showing results 1 to 5 of 12.");
+    assertThat(page.getPreviousCursor()).isNull();
+    assertThat(SearchCursor.decode(page.getNextCursor()))
+        .isEqualTo(SearchCursor.of(2, false, List.of(1.0, "5"), QueryTier.EXACT));
+    assertThat(page.getSearchResults()).extracting(ProductListItem::getId).containsExactly("1", "2", "3", "4", "5");
+  }
+
+  @Test
+  public void linksTheLastPageToThePreviousOneOnly() {
+    ProductSearchRequest searchRequest = new ProductSearchRequest();
+    searchRequest.setPage(3);
+
+    ProductSearchPage page = ProductSearchPage.of(searchRequest, QueryTier.FUZZY,
+        searchResponse(12, searchHits(11, 12)));
+
+    assertThat(page.getPageInfo()).isEqualTo("Showing results 11 to 12 of 12.");
+    assertThat(SearchCursor.decode(page.getPreviousCursor()))
+        .isEqualTo(SearchCursor.of(2, true, List.of(1.0, "11"), QueryTier.FUZZY));
+    assertThat(page.getNextCursor()).isNull();
+  }
+
+  @Test
+  public void followsANextCursor() {
+    ProductSearchRequest searchRequest = withCursor(SearchCursor.of(2, false, List.of(1.0, "5"), QueryTier.FUZZY));
+
+    ProductSearchPage page = ProductSearchPage.of(searchRequest, QueryTier.FUZZY,
+        searchResponse(12, searchHits(6, 10)));
+
+    assertThat(page.getPageInfo()).isEqualTo("Showing results 6 to 10 of 12.");
+    assertThat(SearchCursor.decode(page.getPreviousCursor()))
+        .isEqualTo(SearchCursor.of(1, true, List.of(1.0, "6"), QueryTier.FUZZY));
+    assertThat(SearchCursor.decode(page.getNextCursor()))
+        .isEqualTo(SearchCursor.of(3, false, List.of(1.0, "10"), QueryTier.FUZZY));
+  }
+
+  @Test
+  public void restoresTheOrderOfHitsFoundBackwardsThroughAPreviousCursor() {
+    ProductSearchRequest searchRequest = withCursor(SearchCursor.of(2, true, List.of(1.0, "11"), QueryTier.EXACT));
+
+    ProductSearchPage page = ProductSearchPage.of(searchRequest, QueryTier.EXACT,
+        searchResponse(12, searchHits(10, 6)));
+
+    assertThat(page.getSearchResults()).extracting(ProductListItem::getId).containsExactly("6", "7", "8", "9", "10");
+    assertThat(SearchCursor.decode(page.getPreviousCursor()))
+        .isEqualTo(SearchCursor.of(1, true, List.of(1.0, "6"), QueryTier.EXACT));
+    assertThat(SearchCursor.decode(page.getNextCursor()))
+        .isEqualTo(SearchCursor.of(3, false, List.of(1.0, "10"), QueryTier.EXACT));
+  }
+
+  @Test
+  public void linksNothingWithoutHits() {
+    ProductSearchRequest searchRequest = withCursor(SearchCursor.of(2, false, List.of(1.0, "5"), QueryTier.EXACT));
+
+    ProductSearchPage page = ProductSearchPage.of(searchRequest, QueryTier.EXACT, searchResponse(12));
+
+    assertThat(page.getPreviousCursor()).isNull();
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(page.getSearchResults()).isEmpty();
+  }
+
+  @Test
+  public void showsTheHighlightedPartOfTheDescription() {
+    SearchHit searchHit = searchHit("1");
+    searchHit.highlightFields(Map.of("description",
+        new HighlightField("description", new Text[] {new Text("Nulla facilisi.")})));
+
+    ProductSearchPage page = ProductSearchPage.of(new ProductSearchRequest(), QueryTier.EXACT,
+        searchResponse(2, searchHit, searchHit("2")));
+
+    assertThat(page.getSearchResults()).extracting(ProductListItem::getShortDescription)
+        .containsExactly("Nulla facilisi.", null);
+  }
+
+  @Test
+  public void rejectsPagesThatCanOnlyBeReachedThroughCursors() {
+    ProductSearchRequest searchRequest = new ProductSearchRequest();
+    searchRequest.setPage(11);
+
+    assertThatThrownBy(searchRequest::getFrom)
+        .hasMessage("Page 11 is not between 1 and 10, follow the cursors instead.");
+  }
+
+  private static ProductSearchRequest withCursor(SearchCursor cursor) {
+    ProductSearchRequest searchRequest = new ProductSearchRequest();
+    searchRequest.setCursor(cursor.encode());
+
+    return searchRequest;
+  }
+
+}
@@ -0,0 +1,76 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Test;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+public class SearchCursorTest {
+
+  @Test
+  public void decodesAnEncodedCursor() {
+    SearchCursor cursor = SearchCursor.of(3, true, List.of(1.5, "42"), QueryTier.FUZZY);
+
+    SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+    assertThat(decoded).isEqualTo(cursor);
+  }
+
+  @Test
+  public void encodesCursorsUrlSafeWithoutPadding() {
+    SearchCursor cursor = SearchCursor.of(2, false, List.of(0.123456789, "??>>"), QueryTier.EXACT);
+
+    assertThat(cursor.encode()).matches("[A-Za-z0-9_-]+");
+  }
+
+  @Test
+  public void decodesCursorsWithoutQueryTier() {
+    SearchCursor decoded = SearchCursor.decode(encode("{\"page\":2,\"reverse\":false,\"sortValues\":[1.0,\"7\"]}"));
+
+    assertThat(decoded.getPage()).isEqualTo(2);
+    assertThat(decoded.getSortValues()).containsExactly(1.0, "7");
+    assertThat(decoded.getQueryTier()).isNull();
+  }
+
+  @Test
+  public void rejectsTokensThatAreNotBase64() {
+    assertInvalid("not a cursor!");
+  }
+
+  @Test
+  public void rejectsTruncatedTokens() {
+    String token = SearchCursor.of(2, false, List.of(1.0, "7"), QueryTier.EXACT).encode();
+
+    assertInvalid(token.substring(0, token.length() / 2));
+  }
+
+  @Test
+  public void rejectsTokensWithTamperedContent() {
+    assertInvalid(encode("{\"page\":\"two\",\"reverse\":false,\"sortValues\":[1.0,\"7\"]}"));
+    assertInvalid(encode("{\"page\":2,\"reverse\":false,\"sortValues\":[1.0,\"7\"],\"queryTier\":\"SLOPPY\"}"));
+    assertInvalid(encode("[2,false]"));
+  }
+
+  @Test
+  public void answersInvalidTokensWithBadRequest() {
+    assertThatThrownBy(() -> SearchCursor.decode("not a cursor!")).satisfies(e -> assertThat(
+        AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class).value())
+        .isEqualTo(HttpStatus.BAD_REQUEST));
+  }
+
+  private static void assertInvalid(String token) {
+    assertThatThrownBy(() -> SearchCursor.decode(token)).hasMessage("The search cursor is invalid.");
+  }
+
+  private static String encode(String json) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(UTF_8));
+  }
+
+}
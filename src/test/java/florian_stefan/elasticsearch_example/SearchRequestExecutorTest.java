@@ -0,0 +1,286 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class SearchRequestExecutorTest {
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger sentRequests = new AtomicInteger();
+
+  private final Queue<ActionListener<String>> listeners = new ArrayDeque<>();
+  private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+  private final Map<Long, Runnable> scheduledTasks = new HashMap<>();
+  private final SearchRequestExecutor searchRequestExecutor = newSearchRequestExecutor(withoutHedging(), 64, 512);
+
+  @Before
+  public void setUp() {
+    when(scheduler.schedule(any(Runnable.class), anyLong(), eq(MILLISECONDS))).thenAnswer(invocation -> {
+      scheduledTasks.put(invocation.getArgument(1), invocation.getArgument(0));
+
+      return mock(ScheduledFuture.class);
+    });
+  }
+
+  @Test
+  public void sharesTheResponseOfAPendingIdenticalRequest() {
+    CompletableFuture<String> response = new CompletableFuture<>();
+
+    CompletableFuture<String> first = searchRequestExecutor.coalesce("search", "tea", send(response));
+    CompletableFuture<String> second = searchRequestExecutor.coalesce("search", "tea", send(response));
+    response.complete("products");
+
+    assertThat(sentRequests).hasValue(1);
+    assertThat(first.join()).isEqualTo("products");
+    assertThat(second.join()).isEqualTo("products");
+    assertThat(meterRegistry.get("elasticsearch.requests.coalesced").counter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void sendsRequestsWithDifferentKeysSeparately() {
+    searchRequestExecutor.coalesce("search", "tea", send(new CompletableFuture<>()));
+    searchRequestExecutor.coalesce("search", "cheese", send(new CompletableFuture<>()));
+
+    assertThat(sentRequests).hasValue(2);
+  }
+
+  @Test
+  public void sendsTheRequestAgainOnceTheResponseArrived() {
+    searchRequestExecutor.coalesce("search", "tea", send(CompletableFuture.completedFuture("products"))).join();
+    searchRequestExecutor.coalesce("search", "tea", send(CompletableFuture.completedFuture("products"))).join();
+
+    assertThat(sentRequests).hasValue(2);
+  }
+
+  @Test
+  public void sharesFailuresWithoutKeepingThem() {
+    CompletableFuture<String> response = new CompletableFuture<>();
+
+    CompletableFuture<String> first = searchRequestExecutor.coalesce("search", "tea", send(response));
+    CompletableFuture<String> second = searchRequestExecutor.coalesce("search", "tea", send(response));
+    response.completeExceptionally(new IllegalStateException("unavailable"));
+    searchRequestExecutor.coalesce("search", "tea", send(new CompletableFuture<>()));
+
+    assertThatThrownBy(first::join).hasCauseInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(sentRequests).hasValue(2);
+  }
+
+  @Test
+  public void doesNotShareARequestThatFailedBeforeItWasSent() {
+    CompletableFuture<String> rejected = searchRequestExecutor.coalesce("search", "tea", () -> {
+      throw new RejectedExecutionException();
+    });
+    CompletableFuture<String> response = new CompletableFuture<>();
+    CompletableFuture<String> retried = searchRequestExecutor.coalesce("search", "tea", send(response));
+    response.complete("products");
+
+    assertThatThrownBy(rejected::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(RejectedExecutionException.class);
+    assertThat(retried.join()).isEqualTo("products");
+    assertThat(sentRequests).hasValue(1);
+  }
+
+  @Test
+  public void givesEveryCallerItsOwnFuture() {
+    CompletableFuture<String> response = new CompletableFuture<>();
+
+    CompletableFuture<String> first = searchRequestExecutor.coalesce("search", "tea", send(response));
+    CompletableFuture<String> second = searchRequestExecutor.coalesce("search", "tea", send(response));
+    first.cancel(false);
+    response.complete("products");
+
+    assertThat(second.join()).isEqualTo("products");
+  }
+
+  @Test
+  public void identifiesGetsByTheFieldsTheyFetch() {
+    GetRequest getRequest = new GetRequest("products", "_doc", "7");
+    GetRequest getNameRequest = new GetRequest("products", "_doc", "7")
+        .fetchSourceContext(new FetchSourceContext(true, new String[] {"name"}, null));
+    GetRequest getPriceRequest = new GetRequest("products", "_doc", "7")
+        .fetchSourceContext(new FetchSourceContext(true, new String[] {"price"}, null));
+
+    assertThat(SearchRequestExecutor.getKey(getNameRequest))
+        .isEqualTo(SearchRequestExecutor.getKey(new GetRequest("products", "_doc", "7")
+            .fetchSourceContext(new FetchSourceContext(true, new String[] {"name"}, null))))
+        .isNotEqualTo(SearchRequestExecutor.getKey(getPriceRequest))
+        .isNotEqualTo(SearchRequestExecutor.getKey(getRequest));
+  }
+
+  @Test
+  public void sendsADuplicateIfTheResponseTakesLongerThanTheHedgeDelay() {
+    ReadLatencyPolicy readLatencyPolicy = withHedging(20);
+    readLatencyPolicy.recordLatency("search", MILLISECONDS.toNanos(1));
+    SearchRequestExecutor searchRequestExecutor = newSearchRequestExecutor(readLatencyPolicy, 64, 512);
+
+    CompletableFuture<String> response = searchRequestExecutor.execute("search", listeners::add);
+    ActionListener<String> first = listeners.poll();
+
+    assertThat(listeners).isEmpty();
+
+    runTaskScheduledAfter(20);
+    ActionListener<String> duplicate = listeners.poll();
+    duplicate.onResponse("duplicate");
+    first.onResponse("first");
+
+    assertThat(response.join()).isEqualTo("duplicate");
+    assertThat(meterRegistry.get("elasticsearch.requests.hedged").counter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void sendsNoDuplicateIfTheResponseArrivesInTime() {
+    ReadLatencyPolicy readLatencyPolicy = withHedging(20);
+    readLatencyPolicy.recordLatency("search", MILLISECONDS.toNanos(1));
+    SearchRequestExecutor searchRequestExecutor = newSearchRequestExecutor(readLatencyPolicy, 64, 512);
+
+    CompletableFuture<String> response = searchRequestExecutor.execute("search", listeners::add);
+    listeners.poll().onResponse("first");
+    runTaskScheduledAfter(20);
+
+    assertThat(response.join()).isEqualTo("first");
+    assertThat(listeners).isEmpty();
+    assertThat(meterRegistry.find("elasticsearch.requests.hedged").counter()).isNull();
+  }
+
+  @Test
+  public void failsTheRequestOnceTheLatencyBudgetOfItsOperationIsExhausted() {
+    MockEnvironment environment = new MockEnvironment().withProperty("search.latency-budget-millis.suggest", "50");
+    ReadLatencyPolicy readLatencyPolicy = new ReadLatencyPolicy(environment, 2000, false, 95, 5, 100, 10);
+    SearchRequestExecutor searchRequestExecutor = newSearchRequestExecutor(readLatencyPolicy, 1, 512);
+
+    CompletableFuture<String> response = searchRequestExecutor.execute("suggest", listeners::add);
+
+    assertThat(response).isNotDone();
+
+    runTaskScheduledAfter(50);
+
+    assertThatThrownBy(response::join).hasMessageContaining("Elasticsearch did not respond within 50 ms.");
+
+    listeners.poll().onResponse("late");
+    CompletableFuture<String> nextResponse = searchRequestExecutor.execute("suggest", listeners::add);
+    listeners.poll().onResponse("next");
+
+    assertThat(nextResponse.join()).isEqualTo("next");
+  }
+
+  @Test
+  public void queuesRequestsBeyondTheConcurrencyLimitAndRejectsThemOnceTheQueueIsFull() {
+    SearchRequestExecutor searchRequestExecutor = newSearchRequestExecutor(withoutHedging(), 1, 1);
+
+    CompletableFuture<String> first = searchRequestExecutor.execute("search", listeners::add);
+    CompletableFuture<String> second = searchRequestExecutor.execute("search", listeners::add);
+    CompletableFuture<String> third = searchRequestExecutor.execute("search", listeners::add);
+
+    assertThat(listeners).hasSize(1);
+    assertThatThrownBy(third::join).hasMessageContaining("Too many search requests are waiting for Elasticsearch.");
+
+    listeners.poll().onResponse("first");
+    listeners.poll().onResponse("second");
+
+    assertThat(first.join()).isEqualTo("first");
+    assertThat(second.join()).isEqualTo("second");
+  }
+
+  @Test
+  public void failsFastWhileTheCircuitBreakerIsOpen() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(meterRegistry, 1, 0.5, 60_000);
+    SearchRequestExecutor searchRequestExecutor = newSearchRequestExecutor(withoutHedging(), circuitBreaker, 64, 512);
+
+    CompletableFuture<String> failed = searchRequestExecutor.execute("search",
+        listener -> listener.onFailure(new IOException("connection refused")));
+    CompletableFuture<String> shortCircuited = searchRequestExecutor.execute("search", listeners::add);
+
+    assertThatThrownBy(failed::join).hasCauseInstanceOf(IOException.class);
+    assertThatThrownBy(shortCircuited::join).hasMessageContaining("Elasticsearch is unavailable");
+    assertThat(listeners).isEmpty();
+  }
+
+  @Test
+  public void releasesTheSlotOfARequestThatFailedBeforeItWasSent() {
+    SearchRequestExecutor searchRequestExecutor = newSearchRequestExecutor(withoutHedging(), 1, 512);
+
+    CompletableFuture<String> failed = searchRequestExecutor.execute("search", listener -> {
+      throw new IllegalArgumentException("invalid request");
+    });
+    CompletableFuture<String> response = searchRequestExecutor.execute("search", listeners::add);
+    listeners.poll().onResponse("products");
+
+    assertThatThrownBy(failed::join).hasCauseInstanceOf(IllegalArgumentException.class);
+    assertThat(response.join()).isEqualTo("products");
+  }
+
+  private <T> Supplier<CompletableFuture<T>> send(CompletableFuture<T> response) {
+    return () -> {
+      sentRequests.incrementAndGet();
+
+      return response;
+    };
+  }
+
+  /**
+   * Runs the hedge or timeout that the last request scheduled with the given delay, as if the delay had passed.
+   */
+  private void runTaskScheduledAfter(long delayMillis) {
+    assertThat(scheduledTasks).containsKey(delayMillis);
+
+    scheduledTasks.get(delayMillis).run();
+  }
+
+  private SearchRequestExecutor newSearchRequestExecutor(ReadLatencyPolicy readLatencyPolicy,
+      int maxConcurrentRequests, int maxQueuedRequests) {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(meterRegistry, 50, 0.5, 60_000);
+
+    return newSearchRequestExecutor(readLatencyPolicy, circuitBreaker, maxConcurrentRequests, maxQueuedRequests);
+  }
+
+  /**
+   * Creates an executor without a client, so that the tests send their requests through their own actions, and with a
+   * scheduler whose tasks only run when a test runs them.
+   */
+  private SearchRequestExecutor newSearchRequestExecutor(ReadLatencyPolicy readLatencyPolicy,
+      CircuitBreaker circuitBreaker, int maxConcurrentRequests, int maxQueuedRequests) {
+    return new SearchRequestExecutor(null, new ElasticsearchMetrics(meterRegistry), readLatencyPolicy, circuitBreaker,
+        scheduler, maxConcurrentRequests, maxQueuedRequests);
+  }
+
+  private static ReadLatencyPolicy withoutHedging() {
+    return new ReadLatencyPolicy(new MockEnvironment(), 2000, false, 95, 5, 100, 10);
+  }
+
+  /**
+   * Returns a policy that hedges after the given delay as soon as a single latency has been recorded.
+   */
+  private static ReadLatencyPolicy withHedging(long delayMillis) {
+    return new ReadLatencyPolicy(new MockEnvironment(), 2000, true, 50, delayMillis, 1, 0);
+  }
+
+}
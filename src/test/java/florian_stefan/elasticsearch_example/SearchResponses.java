@@ -0,0 +1,92 @@
+package florian_stefan.elasticsearch_example;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponse.Clusters;
+import org.elasticsearch.action.search.SearchResponseSections;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+
+/**
+ * Builds search responses with product hits sorted by score and id, as the result list requests them, and with empty
+ * facet aggregations.
+ */
+final class SearchResponses {
+
+  private SearchResponses() {
+  }
+
+  static SearchResponse searchResponse(long totalHits, SearchHit... searchHits) {
+    Aggregations aggregations = new Aggregations(List.of(
+        facet(Facets.STATUSES, buckets(Facets.STATUSES, Terms.class)),
+        facet(Facets.PRICE_RANGES, buckets(Facets.PRICE_RANGES, Range.class)),
+        facet(Facets.CATEGORIES, buckets(Facets.CATEGORIES, Terms.class))));
+    SearchResponseSections sections = new SearchResponseSections(
+        new SearchHits(searchHits, totalHits, 1.0f), aggregations, null, false, null, null, 1);
+
+    return new SearchResponse(sections, null, 1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY, Clusters.EMPTY);
+  }
+
+  /**
+   * Builds a page of a scroll, which has no aggregations.
+   */
+  static SearchResponse scrollResponse(String scrollId, SearchHit... searchHits) {
+    SearchResponseSections sections = new SearchResponseSections(
+        new SearchHits(searchHits, searchHits.length, 1.0f), null, null, false, null, null, 1);
+
+    return new SearchResponse(sections, scrollId, 1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY, Clusters.EMPTY);
+  }
+
+  static SearchHit searchHit(String id) {
+    SearchHit searchHit = new SearchHit(Integer.parseInt(id), id, new Text("_doc"), emptyMap());
+    String source = "{\"name\":\"Product " + id + "\",\"status\":\"active\",\"price\":\"1.00\"}";
+
+    searchHit.sourceRef(new BytesArray(source.getBytes(UTF_8)));
+    searchHit.sortValues(new Object[] {1.0, id}, new DocValueFormat[] {DocValueFormat.RAW, DocValueFormat.RAW});
+
+    return searchHit;
+  }
+
+  static SearchHit[] searchHits(int fromId, int toId) {
+    int step = fromId <= toId ? 1 : -1;
+    SearchHit[] searchHits = new SearchHit[Math.abs(toId - fromId) + 1];
+
+    for (int i = 0; i < searchHits.length; i++) {
+      searchHits[i] = searchHit(String.valueOf(fromId + i * step));
+    }
+
+    return searchHits;
+  }
+
+  private static Filter facet(String name, Aggregation aggregation) {
+    Filter filter = mock(Filter.class);
+    doReturn(name).when(filter).getName();
+    doReturn(new Aggregations(List.of(aggregation))).when(filter).getAggregations();
+
+    return filter;
+  }
+
+  private static Aggregation buckets(String name, Class<? extends MultiBucketsAggregation> aggregationType) {
+    MultiBucketsAggregation aggregation = mock(aggregationType);
+    doReturn(name).when(aggregation).getName();
+    doReturn(List.of()).when(aggregation).getBuckets();
+
+    return aggregation;
+  }
+
+}
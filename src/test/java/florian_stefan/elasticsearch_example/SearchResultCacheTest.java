@@ -0,0 +1,175 @@
+package florian_stefan.elasticsearch_example;
+
+import static florian_stefan.elasticsearch_example.SearchResponses.searchHits;
+import static florian_stefan.elasticsearch_example.SearchResponses.searchResponse;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import florian_stefan.elasticsearch_example.ProductSearchController.ProductSearchRequest;
+import florian_stefan.elasticsearch_example.ProductSearchController.QueryTier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Set;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class SearchResultCacheTest {
+
+  private static final long MIN_EXACT_HITS = 3;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final SearchRequestExecutor searchRequestExecutor = mock(SearchRequestExecutor.class);
+
+  private SearchResultCache searchResultCache;
+
+  @Before
+  public void setUp() {
+    searchResultCache = new SearchResultCache(searchRequestExecutor, new IndexRequestParser(),
+        new ElasticsearchMetrics(meterRegistry), meterRegistry, 1024 * 1024, 60);
+    ReflectionTestUtils.setField(searchResultCache, "tieredEnabled", true);
+    ReflectionTestUtils.setField(searchResultCache, "minExactHits", MIN_EXACT_HITS);
+  }
+
+  @Test
+  public void fetchesOnlyTheFieldsShownInTheResultList() {
+    ArgumentCaptor<SearchRequest> searchRequest = ArgumentCaptor.forClass(SearchRequest.class);
+    givenExactHits(MIN_EXACT_HITS);
+
+    getSearchPage(withQuery("tea"));
+
+    verify(searchRequestExecutor).search(eq("search_exact"), searchRequest.capture());
+    assertThat(searchRequest.getValue().source().fetchSource().includes())
+        .containsExactly(ProductListItem.SOURCE_INCLUDES);
+    assertThat(searchRequest.getValue().source().highlighter().fields())
+        .extracting(HighlightBuilder.Field::name)
+        .containsExactly("description");
+  }
+
+  @Test
+  public void answersWithTheExactTierIfItFindsEnoughProducts() {
+    givenExactHits(MIN_EXACT_HITS);
+    givenFuzzyHits(12);
+
+    ProductSearchPage page = getSearchPage(withQuery("tea"));
+
+    assertThat(page.getPageInfo()).isEqualTo("Showing results 1 to 3 of 3.");
+    verify(searchRequestExecutor, never()).search(eq("search_fuzzy"), any());
+    assertThat(meterRegistry.get("search.query.tier").tag("tier", "exact").counter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void fallsBackToTheFuzzyTierIfTheExactTierFindsTooFewProducts() {
+    givenExactHits(MIN_EXACT_HITS - 1);
+    givenFuzzyHits(12);
+
+    ProductSearchPage page = getSearchPage(withQuery("tae"));
+
+    assertThat(page.getPageInfo()).isEqualTo("Showing results 1 to 5 of 12.");
+    assertThat(SearchCursor.decode(page.getNextCursor()).getQueryTier()).isEqualTo(QueryTier.FUZZY);
+    verify(searchRequestExecutor).search(eq("search_exact"), any());
+    verify(searchRequestExecutor).search(eq("search_fuzzy"), any());
+    assertThat(meterRegistry.get("search.query.tier").tag("tier", "fuzzy").counter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void followsCursorsWithTheTierOfThePageTheyCameFrom() {
+    givenExactHits(0);
+    givenFuzzyHits(12);
+    ProductSearchRequest searchRequest = withQuery("tae");
+    searchRequest.setCursor(getSearchPage(withQuery("tae")).getNextCursor());
+
+    getSearchPage(searchRequest);
+
+    verify(searchRequestExecutor, times(1)).search(eq("search_exact"), any());
+    verify(searchRequestExecutor, times(2)).search(eq("search_fuzzy"), any());
+  }
+
+  @Test
+  public void searchesOnlyTheFuzzyTierIfTieringIsDisabled() {
+    ReflectionTestUtils.setField(searchResultCache, "tieredEnabled", false);
+    givenFuzzyHits(12);
+
+    getSearchPage(withQuery("tea"));
+
+    verify(searchRequestExecutor, never()).search(eq("search_exact"), any());
+    verify(searchRequestExecutor).search(eq("search_fuzzy"), any());
+  }
+
+  @Test
+  public void sharesPagesBetweenRequestsThatOnlyDifferInTheirFormatting() {
+    givenExactHits(MIN_EXACT_HITS);
+    ProductSearchRequest searchRequest = withQuery("Green  tea");
+    searchRequest.setStatus("{\"name\":\"active\"}");
+    ProductSearchRequest equivalentSearchRequest = withQuery("TEA green green");
+    equivalentSearchRequest.setStatus("{ \"name\" : \"active\" }");
+    equivalentSearchRequest.setPage(1);
+
+    ProductSearchPage page = getSearchPage(searchRequest);
+
+    assertThat(getSearchPage(equivalentSearchRequest)).isSameAs(page);
+    verify(searchRequestExecutor, times(1)).search(eq("search_exact"), any());
+  }
+
+  @Test
+  public void searchesRequestsThatDifferInTheirFiltersSeparately() {
+    givenExactHits(MIN_EXACT_HITS);
+    ProductSearchRequest searchRequest = withQuery("tea");
+    searchRequest.setStatus("{\"name\":\"active\"}");
+
+    getSearchPage(withQuery("tea"));
+    getSearchPage(searchRequest);
+
+    verify(searchRequestExecutor, times(2)).search(eq("search_exact"), any());
+  }
+
+  @Test
+  public void searchesAgainOnceTheIndexChanged() {
+    givenExactHits(MIN_EXACT_HITS);
+
+    getSearchPage(withQuery("tea"));
+    searchResultCache.onIndexChanged(IndexChangedEvent.ofDocuments("products", Set.of("1")));
+    getSearchPage(withQuery("tea"));
+
+    verify(searchRequestExecutor, times(2)).search(eq("search_exact"), any());
+  }
+
+  private void givenExactHits(long totalHits) {
+    givenHits("search_exact", totalHits);
+  }
+
+  private void givenFuzzyHits(long totalHits) {
+    givenHits("search_fuzzy", totalHits);
+  }
+
+  private void givenHits(String operation, long totalHits) {
+    int pageSize = (int) Math.min(totalHits, 5);
+
+    when(searchRequestExecutor.search(eq(operation), any(SearchRequest.class)))
+        .thenAnswer(invocation -> completedFuture(pageSize == 0
+            ? searchResponse(totalHits)
+            : searchResponse(totalHits, searchHits(1, pageSize))));
+  }
+
+  private ProductSearchPage getSearchPage(ProductSearchRequest searchRequest) {
+    return searchResultCache.getSearchPage(searchRequest).join();
+  }
+
+  private static ProductSearchRequest withQuery(String query) {
+    ProductSearchRequest searchRequest = new ProductSearchRequest();
+    searchRequest.setQuery(query);
+
+    return searchRequest;
+  }
+
+}